@@ -0,0 +1,84 @@
+package com.titanicscriptinterpreter.benchmarks;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptEngine;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What the game does while a puppet is on screen: calling script functions, from outside the engine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotPathBenchmark {
+
+    private static final String[] MESSAGES = {"hello", "tip", "parrot", "goodbye", "unknown"};
+
+    @Param({"vm", "reference", "specialize"})
+    public String engine;
+
+    private ScriptContext ctx;
+    private ScriptEngine scriptEngine;
+    private List<Object> greetArguments;
+    private List<Object> spinArguments;
+    private List<List<Object>> routeArguments;
+    private int message;
+
+    @Setup
+    public void setUp() {
+        PuppetScripts.silenceOutput();
+        ctx = new ScriptContext();
+        ctx.setVariable("mood", "calm");
+        ctx.setVariable("phase", 2);
+        scriptEngine = PuppetScripts.engine(engine, ctx);
+        scriptEngine.load(PuppetScripts.parse("hotpath.txt"), ctx);
+
+        greetArguments = List.of("Penny", 1);
+        spinArguments = List.of(100);
+        routeArguments = new ArrayList<>();
+        for (String msg : MESSAGES) {
+            routeArguments.add(List.of(msg));
+        }
+    }
+
+    /**
+     * A round-trip through callFunction() on a small function.
+     */
+    @Benchmark
+    public Object callFunction() {
+        return scriptEngine.callFunction("greet", greetArguments, ctx);
+    }
+
+    /**
+     * A while loop of 100 iterations, five conditions each on locals and globals of several types.
+     */
+    @Benchmark
+    public Object whileConditions() {
+        return scriptEngine.callFunction("spin", spinArguments, ctx);
+    }
+
+    /**
+     * A switch on strings of 12 cases, hitting different cases or none.
+     */
+    @Benchmark
+    public Object switchDispatch() {
+        message = (message + 1) % MESSAGES.length;
+        return scriptEngine.callFunction("route", routeArguments.get(message), ctx);
+    }
+}
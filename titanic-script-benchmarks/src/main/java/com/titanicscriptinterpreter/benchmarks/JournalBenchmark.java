@@ -0,0 +1,89 @@
+package com.titanicscriptinterpreter.benchmarks;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptEngine;
+import com.titanicscriptinterpreter.project.engine.snapshot.Journal;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What the Journal costs the scripts writing globals: 200 global stores per call, in the VM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+
+    /**
+     * "none": no journal, "group": a commit window of 10 ms, "sync": every write forced to the disk.
+     */
+    @Param({"none", "group", "sync"})
+    public String journal;
+
+    private ScriptContext ctx;
+    private ScriptEngine scriptEngine;
+    private List<Object> storeArguments;
+    private Path journalPath;
+    private Journal openJournal;
+
+    @Setup
+    public void setUp() throws IOException {
+        PuppetScripts.silenceOutput();
+        ctx = new ScriptContext();
+        scriptEngine = PuppetScripts.engine("vm", ctx);
+        scriptEngine.load(PuppetScripts.parse("journal.txt"), ctx);
+        storeArguments = List.of(100);
+
+        if (!journal.equals("none")) {
+            journalPath = Files.createTempFile("journal", ".log");
+            openJournal = Journal.open(journalPath, ctx.getGlobalSymbols(), journal.equals("sync") ? 0 : 10);
+            ctx.setGlobalWriteListener(openJournal);
+        }
+    }
+
+    /**
+     * The journal would grow for the whole run otherwise, like without snapshots.
+     */
+    @TearDown(Level.Iteration)
+    public void checkpoint() throws IOException {
+        if (openJournal != null) {
+            openJournal.checkpoint();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (openJournal != null) {
+            ctx.setGlobalWriteListener(null);
+            openJournal.close();
+            Files.delete(journalPath);
+        }
+    }
+
+    /**
+     * A while loop of 100 iterations writing an int and a string global each.
+     */
+    @Benchmark
+    public Object storeGlobals() {
+        return scriptEngine.callFunction("store", storeArguments, ctx);
+    }
+}
@@ -0,0 +1,59 @@
+package com.titanicscriptinterpreter.benchmarks;
+
+import com.titanicscriptinterpreter.project.engine.lexer.Parser;
+import com.titanicscriptinterpreter.project.engine.lexer.ScriptLexer;
+import com.titanicscriptinterpreter.project.engine.lexer.Token;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lexing and parsing a whole puppet script, what every launch without the cache does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LexerParserBenchmark {
+
+    @Param({"runyoself.txt", "hotpath.txt"})
+    public String script;
+
+    private List<String> lines;
+    private List<Token> tokens;
+
+    @Setup
+    public void setUp() {
+        PuppetScripts.silenceOutput();
+        lines = PuppetScripts.lines(script);
+        tokens = new ScriptLexer(lines).lexAll();
+    }
+
+    @Benchmark
+    public List<Token> lex() {
+        return new ScriptLexer(lines).lexAll();
+    }
+
+    @Benchmark
+    public List<Statement> parse() {
+        return new Parser(tokens).parse();
+    }
+
+    @Benchmark
+    public List<Statement> lexAndParse() {
+        return new Parser(new ScriptLexer(lines)).parse();
+    }
+}
@@ -0,0 +1,76 @@
+package com.titanicscriptinterpreter.benchmarks;
+
+import com.titanicscriptinterpreter.project.engine.bytecode.VirtualMachine;
+import com.titanicscriptinterpreter.project.engine.interpreter.BuiltinFunctions;
+import com.titanicscriptinterpreter.project.engine.interpreter.Interpreter;
+import com.titanicscriptinterpreter.project.engine.interpreter.NativeRegistry;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptEngine;
+import com.titanicscriptinterpreter.project.engine.lexer.Parser;
+import com.titanicscriptinterpreter.project.engine.lexer.ScriptLexer;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The scripts of the benchmarks (src/main/resources/puppet) and the engines to run them.
+ */
+final class PuppetScripts {
+
+    private PuppetScripts() {
+    }
+
+    static List<String> lines(String name) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                PuppetScripts.class.getResourceAsStream("/puppet/" + name), StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<Statement> parse(String name) {
+        return new Parser(new ScriptLexer(lines(name))).parse();
+    }
+
+    /**
+     * The builtins, plus dec(n) for the loops: the scripts have no arithmetic.
+     */
+    static NativeRegistry natives() {
+        NativeRegistry natives = BuiltinFunctions.createRegistry();
+        natives.register("dec", 1, (argValues, ctx) -> (Integer) argValues.get(0) - 1);
+        return natives;
+    }
+
+    /**
+     * @param engine "vm", "reference" or "specialize", like the options of the command line
+     */
+    static ScriptEngine engine(String engine, ScriptContext ctx) {
+        switch (engine) {
+            case "vm":
+                return new VirtualMachine(ctx, natives());
+            case "reference":
+                return new Interpreter(ctx, natives());
+            case "specialize":
+                Interpreter interpreter = new Interpreter(ctx, natives());
+                interpreter.setSpecializing(true);
+                return interpreter;
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+
+    /**
+     * The engines print each function they register, and the natives their messages: not what is measured.
+     */
+    static void silenceOutput() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+}
@@ -0,0 +1,49 @@
+package com.titanicscriptinterpreter.benchmarks;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptEngine;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading the parsed statements in a new engine: folding, linking (and compiling for the VM), registering the functions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegistrationBenchmark {
+
+    @Param({"vm", "reference"})
+    public String engine;
+
+    private List<Statement> statements;
+
+    @Setup
+    public void setUp() {
+        PuppetScripts.silenceOutput();
+        statements = PuppetScripts.parse("hotpath.txt");
+    }
+
+    @Benchmark
+    public ScriptEngine load() {
+        ScriptContext ctx = new ScriptContext();
+        ScriptEngine scriptEngine = PuppetScripts.engine(engine, ctx);
+        scriptEngine.load(statements, ctx);
+        return scriptEngine;
+    }
+}
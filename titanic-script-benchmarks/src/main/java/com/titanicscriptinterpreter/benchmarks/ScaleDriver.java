@@ -0,0 +1,269 @@
+package com.titanicscriptinterpreter.benchmarks;
+
+import com.titanicscriptinterpreter.project.engine.bytecode.VirtualMachine;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptEngine;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptIO;
+import com.titanicscriptinterpreter.project.engine.lexer.Parser;
+import com.titanicscriptinterpreter.project.engine.lexer.ScriptLexer;
+import com.titanicscriptinterpreter.project.engine.lexer.TokenType;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates scripts of growing sizes (see ScriptGenerator) and reports the throughput of the lexer, the parser and the engine:
+ *
+ * java -cp titanic-script-benchmarks/target/benchmarks.jar com.titanicscriptinterpreter.benchmarks.ScaleDriver --sizes 1M,16M,256M
+ *
+ * The lexer and the parser stream the file. The statements are only kept, loaded and run up to --execute-limit,
+ * then each function is called once with the call budget. A stack overflow is reported instead of a number.
+ */
+public class ScaleDriver {
+
+    private static final long GENERATOR_STACK_SIZE = 1L << 30;
+    private static final String OVERFLOW = "overflow";
+
+    private long seed = 1912;
+    private final List<Long> sizes = new ArrayList<>(List.of(1L << 20, 4L << 20, 16L << 20));
+    private long bytesPerFunction = 16 * 1024;
+    private int functionCount; // 0: from bytesPerFunction
+    private int maxDepth = 6;
+    private int globalCount = 8;
+    private int fanOut = 2;
+    private int callBudget = 3;
+    private ScriptGenerator.CallGraph callGraph = ScriptGenerator.CallGraph.RANDOM;
+    private long executeLimit = 64L << 20;
+    private String engine = "vm";
+    private Path directory;
+
+    public static void main(String[] args) throws IOException {
+        ScaleDriver driver = new ScaleDriver();
+        if (!driver.parseArguments(args)) {
+            System.err.println("Usage: ScaleDriver [--seed n] [--sizes 1M,16M,256M] [--bytes-per-function 16K] [--functions n] [--depth n]"
+                    + " [--globals n] [--graph NONE|CHAIN|TREE|RANDOM|STAR] [--fan-out n] [--budget n]"
+                    + " [--execute-limit 64M] [--engine vm|reference|specialize] [--dir path]");
+            System.exit(1);
+        }
+        driver.run();
+    }
+
+    private boolean parseArguments(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--sizes":
+                        sizes.clear();
+                        for (String size : value.split(",")) {
+                            sizes.add(parseSize(size));
+                        }
+                        break;
+                    case "--bytes-per-function":
+                        bytesPerFunction = parseSize(value);
+                        break;
+                    case "--functions":
+                        functionCount = Integer.parseInt(value);
+                        break;
+                    case "--depth":
+                        maxDepth = Integer.parseInt(value);
+                        break;
+                    case "--globals":
+                        globalCount = Integer.parseInt(value);
+                        break;
+                    case "--graph":
+                        callGraph = ScriptGenerator.CallGraph.valueOf(value.toUpperCase());
+                        break;
+                    case "--fan-out":
+                        fanOut = Integer.parseInt(value);
+                        break;
+                    case "--budget":
+                        callBudget = Integer.parseInt(value);
+                        break;
+                    case "--execute-limit":
+                        executeLimit = parseSize(value);
+                        break;
+                    case "--engine":
+                        engine = value;
+                        break;
+                    case "--dir":
+                        directory = Path.of(value);
+                        break;
+                    default:
+                        return false;
+                }
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private static long parseSize(String size) {
+        String digits = size.trim().toUpperCase();
+        long unit = 1;
+        if (digits.endsWith("K")) {
+            unit = 1L << 10;
+        } else if (digits.endsWith("M")) {
+            unit = 1L << 20;
+        } else if (digits.endsWith("G")) {
+            unit = 1L << 30;
+        }
+        if (unit != 1) {
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        return Long.parseLong(digits) * unit;
+    }
+
+    private void run() throws IOException {
+        Path dir = (directory == null) ? Files.createTempDirectory("puppet-scale") : directory;
+        System.out.println("seed " + seed + ", depth " + maxDepth + ", calls " + callGraph + ", fan-out " + fanOut
+                + ", budget " + callBudget + ", engine " + engine);
+        System.out.printf("%10s %10s %12s %12s %12s %12s %10s %14s%n",
+                "size (MB)", "functions", "lex (MB/s)", "tokens", "parse (MB/s)", "statements", "load (ms)", "calls/s");
+
+        for (long size : sizes) {
+            int functions = (functionCount > 0) ? functionCount : (int) Math.max(1, size / bytesPerFunction);
+            Path script = dir.resolve("generated-" + seed + "-" + size + ".txt");
+            ScriptGenerator generator = new ScriptGenerator(seed);
+            generator.setTargetBytes(size);
+            generator.setFunctionCount(functions);
+            generator.setMaxDepth(maxDepth);
+            generator.setGlobalCount(globalCount);
+            generator.setFanOut(fanOut);
+            generator.setCallGraph(callGraph);
+            long bytes = this.generate(generator, script);
+            double megabytes = bytes / (double) (1 << 20);
+
+            String lex = this.lex(script, megabytes);
+            List<Statement> statements = (size <= executeLimit) ? new ArrayList<>() : null;
+            String parse = this.parse(script, megabytes, statements);
+            String load = "-";
+            String calls = "-";
+            if (statements != null && !parse.contains(OVERFLOW)) {
+                String[] results = this.execute(statements, functions);
+                load = results[0];
+                calls = results[1];
+            }
+            System.out.printf("%10.1f %10d %s %s %10s %14s%n", megabytes, functions, lex, parse, load, calls);
+            Files.delete(script);
+        }
+        if (directory == null) {
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * On its own thread with a large stack: the generator recurses once per nesting level.
+     */
+    private long generate(ScriptGenerator generator, Path script) throws IOException {
+        long[] bytes = new long[1];
+        IOException[] failure = new IOException[1];
+        Thread thread = new Thread(null, () -> {
+            try (Writer writer = Files.newBufferedWriter(script, StandardCharsets.UTF_8)) {
+                bytes[0] = generator.generate(writer);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        }, "generator", GENERATOR_STACK_SIZE);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating " + script, e);
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return bytes[0];
+    }
+
+    private String lex(Path script, double megabytes) throws IOException {
+        long tokens = 0;
+        long start = System.nanoTime();
+        try (ScriptLexer lexer = new ScriptLexer(Files.newBufferedReader(script, StandardCharsets.UTF_8))) {
+            while (lexer.next().getType() != TokenType.EOF) {
+                tokens++;
+            }
+        } catch (StackOverflowError e) {
+            return String.format("%12s %12s", "stack", OVERFLOW);
+        }
+        return String.format("%12.1f %12d", megabytes / seconds(start), tokens);
+    }
+
+    /**
+     * @param statements where to keep the statements, null to drop them
+     */
+    private String parse(Path script, double megabytes, List<Statement> statements) throws IOException {
+        long count = 0;
+        long start = System.nanoTime();
+        try (ScriptLexer lexer = new ScriptLexer(Files.newBufferedReader(script, StandardCharsets.UTF_8))) {
+            Parser parser = new Parser(lexer);
+            Statement stmt;
+            while ((stmt = parser.parseNext()) != null) {
+                count++;
+                if (statements != null) {
+                    statements.add(stmt);
+                }
+            }
+        } catch (StackOverflowError e) {
+            return String.format("%12s %12s", "stack", OVERFLOW);
+        }
+        return String.format("%12.1f %12d", megabytes / seconds(start), count);
+    }
+
+    /**
+     * @return the load time and the calls per second
+     */
+    private String[] execute(List<Statement> statements, int functions) {
+        PrintStream console = System.out;
+        ScriptContext ctx = new ScriptContext();
+        ctx.setIO(new ScriptIO() {
+            @Override
+            public void output(String message) {
+            }
+
+            @Override
+            public String readLine() {
+                return "";
+            }
+        });
+        ScriptEngine scriptEngine = PuppetScripts.engine(engine, ctx);
+
+        // The engines print each function they register
+        PuppetScripts.silenceOutput();
+        try {
+            long start = System.nanoTime();
+            scriptEngine.load(statements, ctx);
+            if (scriptEngine instanceof VirtualMachine vm) {
+                vm.freeze();
+            }
+            String load = String.format("%.0f", seconds(start) * 1000);
+
+            List<Object> arguments = List.of(callBudget);
+            start = System.nanoTime();
+            for (int function = 0; function < functions; function++) {
+                scriptEngine.callFunction("f" + function, arguments, ctx);
+            }
+            return new String[] {load, String.format("%.0f", functions / seconds(start))};
+        } catch (StackOverflowError e) {
+            return new String[] {"stack", OVERFLOW};
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static double seconds(long start) {
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
@@ -0,0 +1,303 @@
+package com.titanicscriptinterpreter.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Writes random but valid puppet scripts, always the same for the same seed and settings, to find what does not scale:
+ * large scripts, deep nesting of if/switch/while, many functions, long call chains.
+ *
+ * Every function is "code fN(d)": d is the call budget, a function calls its callees with dec(d) and stops at zero,
+ * so running any function ends. The call graph only goes from a function to the next ones, there is no recursion.
+ * The loops count down with dec(n) too: register the dec native (see PuppetScripts.natives()) to run them.
+ * Only the outermost loop of a nesting iterates, the loops inside it run once, so the running time does not explode with the depth.
+ * The 'exitcode' statements are behind conditions that are never true.
+ */
+public class ScriptGenerator {
+
+    /**
+     * Which functions a function calls, among the next ones.
+     */
+    public enum CallGraph {
+        NONE,   // No calls
+        CHAIN,  // fN calls fN+1: the deepest call stacks
+        TREE,   // fN calls f2N+1 and f2N+2
+        RANDOM, // fN calls fanOut functions after it, picked at random
+        STAR    // f0 calls every other function
+    }
+
+    private static final String[] WORDS = {"hello", "getlost", "tip", "luggage", "cabin", "bomb", "parrot", "sextant", "scarab", "iceberg"};
+    private static final String[] NATIVES = {"message", "puppetspeak", "spotmovie"};
+    private static final int LOCAL_COUNT = 4;
+    private static final int MAX_INDENT = 16;
+
+    private final SplittableRandom random;
+    private long targetBytes = 64 * 1024;
+    private int functionCount = 16;
+    private int maxDepth = 6;
+    private int globalCount = 8;
+    private int fanOut = 2;
+    private int loopIterations = 3;
+    private CallGraph callGraph = CallGraph.RANDOM;
+
+    private Writer out;
+    private long written;
+    private int indent;
+    private int loopNesting;
+
+    public ScriptGenerator(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * About the size of the whole script. Each function gets its share, so it is reached with fewer functions too.
+     */
+    public void setTargetBytes(long targetBytes) {
+        this.targetBytes = targetBytes;
+    }
+
+    public void setFunctionCount(int functionCount) {
+        this.functionCount = functionCount;
+    }
+
+    /**
+     * Each function has one chain of nested if/switch/while down to this depth, the other blocks stop before.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public void setGlobalCount(int globalCount) {
+        this.globalCount = globalCount;
+    }
+
+    public void setFanOut(int fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    public void setLoopIterations(int loopIterations) {
+        this.loopIterations = loopIterations;
+    }
+
+    public void setCallGraph(CallGraph callGraph) {
+        this.callGraph = callGraph;
+    }
+
+    public int getFunctionCount() {
+        return functionCount;
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public long generate(Writer writer) throws IOException {
+        out = writer;
+        written = 0;
+        indent = 0;
+        loopNesting = 0;
+        this.line("// Generated puppet script: " + functionCount + " functions, depth " + maxDepth + ", calls " + callGraph);
+        long bytesPerFunction = Math.max(1, targetBytes / functionCount);
+        for (int function = 0; function < functionCount; function++) {
+            this.function(function, written + bytesPerFunction);
+        }
+        out.flush();
+        return written;
+    }
+
+    private void function(int function, long endBytes) throws IOException {
+        this.line("code f" + function + "(d)");
+        indent++;
+        this.line("global " + this.globalList());
+        this.line("local l0, l1, l2, l3");
+        for (int i = 0; i < LOCAL_COUNT; i++) {
+            this.line("l" + i + " = " + random.nextInt(100));
+        }
+
+        List<Integer> callees = this.calleesOf(function);
+        if (!callees.isEmpty()) {
+            this.line("if d = 0");
+            indent++;
+            this.line("return 0");
+            indent--;
+            this.line("endif");
+            for (int callee : callees) {
+                this.line("f" + callee + "(dec(d))");
+            }
+        }
+
+        this.nestedBlock(0, true);
+        while (written < endBytes) {
+            this.statement(0);
+        }
+        this.line("return l" + random.nextInt(LOCAL_COUNT));
+        indent--;
+        this.line("endcode");
+    }
+
+    private List<Integer> calleesOf(int function) {
+        List<Integer> callees = new ArrayList<>();
+        switch (callGraph) {
+            case CHAIN:
+                if (function + 1 < functionCount) {
+                    callees.add(function + 1);
+                }
+                break;
+            case TREE:
+                for (int child = 2 * function + 1; child <= 2 * function + 2 && child < functionCount; child++) {
+                    callees.add(child);
+                }
+                break;
+            case RANDOM:
+                for (int i = 0; i < fanOut && function + 1 < functionCount; i++) {
+                    callees.add(function + 1 + random.nextInt(functionCount - function - 1));
+                }
+                break;
+            case STAR:
+                if (function == 0) {
+                    for (int other = 1; other < functionCount; other++) {
+                        callees.add(other);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        return callees;
+    }
+
+    private void statement(int depth) throws IOException {
+        // Fewer blocks deeper, or their size would grow exponentially with the depth: only the spine goes down to maxDepth
+        if (depth < maxDepth && random.nextInt(depth + 3) == 0) {
+            this.nestedBlock(depth, false);
+            return;
+        }
+        switch (random.nextInt(6)) {
+            case 0:
+            case 1:
+                this.line("l" + random.nextInt(LOCAL_COUNT) + " = " + this.value());
+                break;
+            case 2:
+                this.line(this.globalName() + " = " + this.value());
+                break;
+            case 3:
+                this.line(NATIVES[random.nextInt(NATIVES.length)] + "(" + this.value() + ")");
+                break;
+            case 4:
+                this.line("if l" + random.nextInt(LOCAL_COUNT) + " = 999999");
+                indent++;
+                this.line("exitcode");
+                indent--;
+                this.line("endif");
+                break;
+            default:
+                this.line("l" + random.nextInt(LOCAL_COUNT) + " = " + this.globalName());
+                break;
+        }
+    }
+
+    /**
+     * An if, a switch or a while, with a few statements. The spine goes on down to the maximum depth in one of them.
+     */
+    private void nestedBlock(int depth, boolean spine) throws IOException {
+        if (depth >= maxDepth) {
+            return;
+        }
+        int statementCount = 1 + random.nextInt(3);
+        switch (random.nextInt(3)) {
+            case 0:
+                this.line("if " + this.condition());
+                this.block(depth, statementCount, spine);
+                if (random.nextBoolean()) {
+                    this.line("else");
+                    this.block(depth, statementCount, false);
+                }
+                this.line("endif");
+                break;
+            case 1: {
+                this.line("switch l" + random.nextInt(LOCAL_COUNT));
+                int caseCount = 1 + random.nextInt(4);
+                for (int c = 0; c < caseCount; c++) {
+                    this.line("case " + random.nextInt(100));
+                    this.block(depth, statementCount, spine && c == 0);
+                }
+                this.line("endswitch");
+                break;
+            }
+            default: {
+                // The counters of each depth, so that the nested loops do not share them
+                String counter = "c" + depth;
+                String more = "m" + depth;
+                this.line("local " + counter + ", " + more);
+                this.line(counter + " = " + ((loopNesting == 0) ? loopIterations : 1));
+                this.line(more + " = 1");
+                this.line("while " + more + " = 1");
+                loopNesting++;
+                this.block(depth, statementCount, spine);
+                loopNesting--;
+                indent++;
+                this.line("if " + counter + " = 1");
+                indent++;
+                this.line(more + " = 0");
+                indent--;
+                this.line("endif");
+                this.line(counter + " = dec(" + counter + ")");
+                indent--;
+                this.line("endwhile");
+                break;
+            }
+        }
+    }
+
+    private void block(int depth, int statementCount, boolean spine) throws IOException {
+        indent++;
+        for (int i = 0; i < statementCount; i++) {
+            this.statement(depth + 1);
+        }
+        if (spine) {
+            this.nestedBlock(depth + 1, true);
+        }
+        indent--;
+    }
+
+    private String condition() {
+        switch (random.nextInt(3)) {
+            case 0:
+                return "l" + random.nextInt(LOCAL_COUNT) + " = " + random.nextInt(100);
+            case 1:
+                return this.globalName() + " = " + this.value();
+            default:
+                return "l" + random.nextInt(LOCAL_COUNT) + " = l" + random.nextInt(LOCAL_COUNT);
+        }
+    }
+
+    private String value() {
+        return random.nextBoolean() ? String.valueOf(random.nextInt(100)) : "\"" + WORDS[random.nextInt(WORDS.length)] + "\"";
+    }
+
+    private String globalName() {
+        return "g" + random.nextInt(globalCount);
+    }
+
+    private String globalList() {
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < globalCount; i++) {
+            names.append(i == 0 ? "g" : ", g").append(i);
+        }
+        return names.toString();
+    }
+
+    private void line(String text) throws IOException {
+        // Capped, or the indentation alone would be quadratic in the depth
+        int spaces = Math.min(indent, MAX_INDENT);
+        for (int i = 0; i < spaces; i++) {
+            out.write("    ");
+        }
+        out.write(text);
+        out.write('\n');
+        // ASCII only
+        written += 4L * spaces + text.length() + 1;
+    }
+}
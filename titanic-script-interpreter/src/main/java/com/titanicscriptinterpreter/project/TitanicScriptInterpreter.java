@@ -1,41 +1,127 @@
 package com.titanicscriptinterpreter.project;
 
 import com.titanicscriptinterpreter.project.engine.Cli;
+import com.titanicscriptinterpreter.project.engine.bytecode.VirtualMachine;
+import com.titanicscriptinterpreter.project.engine.coverage.CoverageData;
+import com.titanicscriptinterpreter.project.engine.coverage.CoverageMap;
+import com.titanicscriptinterpreter.project.engine.coverage.CoverageReport;
+import com.titanicscriptinterpreter.project.engine.debug.ScriptHooks;
+import com.titanicscriptinterpreter.project.engine.debug.TracePrinter;
+import com.titanicscriptinterpreter.project.engine.interpreter.BuiltinFunctions;
+import com.titanicscriptinterpreter.project.engine.interpreter.ConsoleIO;
 import com.titanicscriptinterpreter.project.engine.interpreter.ExitScriptException;
 import com.titanicscriptinterpreter.project.engine.interpreter.Interpreter;
-import com.titanicscriptinterpreter.project.engine.lexer.Parser;
-import com.titanicscriptinterpreter.project.engine.lexer.ScriptLexer;
+import com.titanicscriptinterpreter.project.engine.interpreter.NativeRegistry;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptEngine;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptLinkException;
+import com.titanicscriptinterpreter.project.engine.loader.LoadedScript;
+import com.titanicscriptinterpreter.project.engine.loader.ScriptBundle;
+import com.titanicscriptinterpreter.project.engine.loader.ScriptDirectoryLoader;
+import com.titanicscriptinterpreter.project.engine.loader.ScriptLoadException;
+import com.titanicscriptinterpreter.project.engine.loader.ScriptLoader;
+import com.titanicscriptinterpreter.project.engine.profiling.Profiling;
+import com.titanicscriptinterpreter.project.engine.profiling.Sampler;
 import com.titanicscriptinterpreter.project.engine.statements.Statement;
-import com.titanicscriptinterpreter.project.engine.lexer.Token;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
 import java.util.ArrayList;
 import java.util.Scanner;
+import jdk.jfr.Recording;
 
 public class TitanicScriptInterpreter {
 
     public static void main(String[] args) throws IOException {
-        if (args.length < 1) {
-            System.err.println("Usage: java -jar my-interpreter.jar <scriptFilePath>");
-            System.exit(1);
+        // --reference runs the script with the tree-walking interpreter instead of the bytecode VM
+        boolean referenceMode = false;
+        // --specialize runs it with the tree-walking interpreter too, its conditions specializing on the types they see
+        boolean specializing = false;
+        boolean dumpStatements = false;
+        boolean useCache = true;
+        String scriptPath = null;
+        // --profile records the calls of the functions in a JFR file, see ProfileSummary
+        Path profilePath = null;
+        // --sample writes the script functions and lines seen by a Sampler, in the collapsed format of the flame graph tools
+        Path samplePath = null;
+        int sampleRate = 1000;
+        // --coverage records the lines and branches of the functions run, see CoverageReport
+        Path coveragePath = null;
+        // --trace prints the statements of the functions run, their writes and the natives called; --break function:line
+        // stops there until Enter is pressed
+        boolean tracing = false;
+        List<String> breakpoints = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--profile") && i + 1 < args.length) {
+                profilePath = Path.of(args[++i]);
+            } else if (arg.equals("--sample") && i + 1 < args.length) {
+                samplePath = Path.of(args[++i]);
+            } else if (arg.equals("--sample-rate") && i + 1 < args.length) {
+                sampleRate = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--coverage") && i + 1 < args.length) {
+                coveragePath = Path.of(args[++i]);
+            } else if (arg.equals("--break") && i + 1 < args.length) {
+                breakpoints.add(args[++i]);
+            } else if (arg.equals("--trace")) {
+                tracing = true;
+            } else if (arg.equals("--reference")) {
+                referenceMode = true;
+            } else if (arg.equals("--specialize")) {
+                referenceMode = true;
+                specializing = true;
+            } else if (arg.equals("--dump")) {
+                dumpStatements = true;
+            } else if (arg.equals("--no-cache")) {
+                useCache = false;
+            } else {
+                scriptPath = arg;
+            }
         }
 
-        String scriptPath = args[0];
-
-        // Lex the script to extract tokens
-        Cli.outputTitle("LEXER...");
-        ScriptLexer lexer = new ScriptLexer(scriptPath);
-        List<Token> tokens = lexer.lexAll();
-        Cli.outputMessage("Tokens extracted.");
+        if (scriptPath == null) {
+            System.err.println("Usage: java -jar my-interpreter.jar [--reference|--specialize] [--dump] [--no-cache] [--profile recording.jfr] [--sample stacks.txt [--sample-rate 1000]] [--coverage run.cov] [--trace] [--break function:line]... <scriptFilePath|scriptDirectory|@manifest>");
+            System.exit(1);
+        }
 
-        // Parse the tokens to create statements
-        Cli.outputTitle("PARSING THE SCRIPT TO CREATE STATEMENTS");
-        Parser parser = new Parser(tokens);
-        List<Statement> statements = parser.parse();
+        // Lex and parse the script to create statements, unless the binary cache next to it is up to date
+        Cli.outputTitle("LOADING THE SCRIPT...");
+        ScriptLoader loader = new ScriptLoader(useCache);
+        List<Statement> statements;
+        List<LoadedScript> scripts;
+        if (scriptPath.startsWith("@") || Files.isDirectory(Path.of(scriptPath))) {
+            // A whole directory of scripts, or a manifest listing them: loaded in parallel
+            ScriptDirectoryLoader directoryLoader = new ScriptDirectoryLoader(loader);
+            ScriptBundle bundle = null;
+            try {
+                bundle = scriptPath.startsWith("@")
+                        ? directoryLoader.loadManifest(Path.of(scriptPath.substring(1)))
+                        : directoryLoader.loadDirectory(Path.of(scriptPath));
+            } catch (ScriptLoadException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+            for (LoadedScript script : bundle.getScripts()) {
+                Cli.outputMessage(script.toString());
+            }
+            Cli.outputMessage(bundle.getScripts().size() + " scripts, " + bundle.getFunctions().size()
+                    + " functions loaded in " + (bundle.getLoadNanos() / 1_000_000) + " ms.");
+            statements = bundle.getStatements();
+            scripts = bundle.getScripts();
+        } else {
+            LoadedScript script = loader.load(Path.of(scriptPath));
+            Cli.outputMessage(script.isFromCache() ? "Statements read from the cache." : "Statements parsed.");
+            statements = script.getStatements();
+            scripts = List.of(script);
+        }
 
-        for (Statement stmt : statements) {
-            System.out.println(stmt);
+        if (dumpStatements) {
+            for (Statement stmt : statements) {
+                System.out.println(stmt);
+            }
         }
 
         // Create the script context with the proper global variables for the game status
@@ -44,16 +130,83 @@ public class TitanicScriptInterpreter {
         gameContext.setVariable("phase", 0);
         gameContext.setVariable("pennybrush", "firstEncounter");
 
-        // Launch the interpreter to register functions
-        Cli.outputTitle("LAUNCHING THE INTERPRETER...");
-        Interpreter interpreter = new Interpreter(gameContext);
-        interpreter.interpretStatements(statements, gameContext);
+        try (Scanner scanner = new Scanner(System.in)) {
+            // The builtins read the player answers from the same scanner as the command loop
+            gameContext.setIO(new ConsoleIO(scanner));
+            NativeRegistry natives = BuiltinFunctions.createRegistry();
 
-        // Launch the engine by calling the first function
-        List<Object> argValues = new ArrayList<>();
-        Cli.outputTitle("BEGINNING OF THE GAME");
+            CoverageData coverage = null;
+            if (coveragePath != null) {
+                CoverageMap coverageMap = new CoverageMap();
+                for (LoadedScript script : scripts) {
+                    coverageMap.addScript(script.getPath().toString(), script.getStatements());
+                }
+                coverage = new CoverageData(coverageMap);
+            }
+
+            // Launch the interpreter to register functions
+            if (specializing) {
+                Cli.outputTitle("LAUNCHING THE INTERPRETER (SPECIALIZING MODE)...");
+            } else {
+                Cli.outputTitle(referenceMode ? "LAUNCHING THE INTERPRETER (REFERENCE MODE)..." : "LAUNCHING THE INTERPRETER...");
+            }
+            ScriptEngine interpreter;
+            if (referenceMode) {
+                Interpreter treeWalker = new Interpreter(gameContext, natives);
+                treeWalker.setSpecializing(specializing);
+                treeWalker.setCoverage(coverage);
+                interpreter = treeWalker;
+            } else {
+                VirtualMachine vm = new VirtualMachine(gameContext, natives);
+                vm.setCoverage(coverage);
+                interpreter = vm;
+            }
+            try {
+                interpreter.load(statements, gameContext);
+            } catch (ScriptLinkException e) {
+                System.err.println("Cannot link the script:" + System.lineSeparator() + e.getMessage());
+                System.exit(1);
+            }
+
+            if (tracing || !breakpoints.isEmpty()) {
+                // --break alone prints only the breakpoints
+                ScriptHooks hooks = new ScriptHooks(new TracePrinter(System.err, tracing) {
+                    @Override
+                    public void breakpointHit(String function, int line, Map<String, Object> locals, ScriptContext ctx) {
+                        super.breakpointHit(function, line, locals, ctx);
+                        Cli.outputMessage("Press Enter to continue.");
+                        if (scanner.hasNextLine()) {
+                            scanner.nextLine();
+                        }
+                    }
+                });
+                for (String breakpoint : breakpoints) {
+                    int colon = breakpoint.lastIndexOf(':');
+                    if (colon <= 0 || !breakpoint.substring(colon + 1).matches("\\d+")) {
+                        System.err.println("Invalid breakpoint, expected function:line: " + breakpoint);
+                        System.exit(1);
+                    }
+                    hooks.addBreakpoint(breakpoint.substring(0, colon), Integer.parseInt(breakpoint.substring(colon + 1)));
+                }
+                interpreter.attach(hooks);
+            }
+
+            Recording recording = null;
+            if (profilePath != null) {
+                recording = Profiling.newRecording(profilePath);
+                recording.start();
+            }
+            Sampler sampler = null;
+            if (samplePath != null) {
+                sampler = new Sampler(sampleRate);
+                sampler.attach(gameContext);
+                sampler.start();
+            }
+
+            // Launch the engine by calling the first function
+            List<Object> argValues = new ArrayList<>();
+            Cli.outputTitle("BEGINNING OF THE GAME");
 
-        try (Scanner scanner = new Scanner(System.in)) {
             String input;
             String command;
 
@@ -87,6 +240,22 @@ public class TitanicScriptInterpreter {
                     Cli.outputMessage("Function ended");
                 }
             }
+
+            if (recording != null) {
+                // Written to its destination
+                recording.close();
+                Cli.outputMessage("Profile written to " + profilePath + ", see ProfileSummary.");
+            }
+            if (sampler != null) {
+                sampler.stop();
+                sampler.writeCollapsed(samplePath);
+                Cli.outputMessage(sampler.getSampleCount() + " samples written to " + samplePath + ".");
+            }
+            if (coverage != null) {
+                coverage.write(coveragePath);
+                new CoverageReport(coverage).writeText(new PrintWriter(System.out));
+                Cli.outputMessage("Coverage written to " + coveragePath + ", see CoverageReport to merge runs.");
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,226 @@
+package com.titanicscriptinterpreter.project.engine.bytecode;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The bytecode of one script function. The top-level statements of a script are compiled as a function too.
+ */
+public class CompiledFunction {
+
+    private final String name;
+    private final List<String> parameters;
+    private final String[] localNames; // Indexed by slot, parameters first
+    // Two layouts of the same code: with a LINE instruction at the start of each statement for the Sampler and the
+    // ScriptHooks, and without them for the runs that need no line. The jumps of each layout target its own instructions.
+    private final int[] linedCode;
+    private final int[] plainCode;
+    private final int[] linedPcs; // By pc of the plain code, the same place in the lined code
+    private final int[] plainPcs; // By pc of the lined code, the same place in the plain code
+    // Swapped by setTraced() while the sessions run: read once when a frame starts or goes back to running
+    private volatile int[] code; // plainCode, or a traced copy of linedCode while a ScriptHooks is attached
+    private volatile int[] sampledCode; // linedCode, or the same traced copy
+    private final int maxStack;
+    private CompiledScript script; // Set when the script holding this function is built
+
+    /**
+     * @param code with the LINE instructions, the code without them is derived from it
+     */
+    public CompiledFunction(String name, List<String> parameters, String[] localNames, int[] code, int maxStack) {
+        this.name = name;
+        this.parameters = parameters;
+        this.localNames = localNames;
+        this.linedCode = code;
+        this.maxStack = maxStack;
+
+        this.plainPcs = new int[code.length + 1];
+        int plainLength = 0;
+        for (int pc = 0; pc < code.length; pc += 1 + OpCode.operandCount(code[pc])) {
+            // A LINE is where the instruction after it is
+            plainPcs[pc] = plainLength;
+            if (code[pc] != OpCode.LINE) {
+                plainLength += 1 + OpCode.operandCount(code[pc]);
+            }
+        }
+        plainPcs[code.length] = plainLength;
+
+        this.plainCode = new int[plainLength];
+        this.linedPcs = new int[plainLength + 1];
+        int line = -1; // The LINE before the instruction
+        for (int pc = 0; pc < code.length; pc += 1 + OpCode.operandCount(code[pc])) {
+            int op = code[pc];
+            if (op == OpCode.LINE) {
+                line = (line < 0) ? pc : line;
+                continue;
+            }
+            int at = plainPcs[pc];
+            // Back in the lined code, the LINE runs again
+            linedPcs[at] = (line < 0) ? pc : line;
+            line = -1;
+            plainCode[at] = op;
+            for (int i = 1; i <= OpCode.operandCount(op); i++) {
+                plainCode[at + i] = code[pc + i];
+            }
+            if (op == OpCode.JUMP || op == OpCode.JUMP_IF_FALSE) {
+                plainCode[at + 1] = plainPcs[code[pc + 1]];
+            }
+        }
+        linedPcs[plainLength] = (line < 0) ? code.length : line;
+        this.code = plainCode;
+        this.sampledCode = linedCode;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Size of the frame: the parameters, then the variables declared with 'local'.
+     */
+    public int getLocalCount() {
+        return localNames.length;
+    }
+
+    public String getLocalName(int slot) {
+        return localNames[slot];
+    }
+
+    /**
+     * The code to run: without the LINE instructions, unless a ScriptHooks is attached.
+     */
+    public int[] getCode() {
+        return code;
+    }
+
+    /**
+     * The code to run while a Sampler watches: with the LINE instructions.
+     */
+    public int[] getSampledCode() {
+        return sampledCode;
+    }
+
+    /**
+     * The code the linking reads and patches with patch(): with the LINE instructions.
+     */
+    int[] getLinedCode() {
+        return linedCode;
+    }
+
+    /**
+     * The layout of the snapshots, which does not depend on what was attached when they were saved.
+     */
+    int[] getPlainCode() {
+        return plainCode;
+    }
+
+    /**
+     * Rewrite an instruction, in every layout of the code. It must keep its operand count.
+     *
+     * @param pc in the lined code
+     */
+    void patch(int pc, int op, int operand) {
+        linedCode[pc] = op;
+        linedCode[pc + 1] = operand;
+        plainCode[plainPcs[pc]] = op;
+        plainCode[plainPcs[pc] + 1] = operand;
+        int[] traced = code;
+        if (traced != plainCode) {
+            traced[pc] = OpCode.tracedOf(op);
+            traced[pc + 1] = operand;
+        }
+    }
+
+    /**
+     * The same place in another layout of the code: a frame saved its pc in the code it was running,
+     * and goes on in the code of the function when it resumes, which may have been swapped since.
+     */
+    int pcIn(int[] target, int[] from, int pc) {
+        if (from == null || from.length == target.length) {
+            // The same layout, or no LINE instruction at all
+            return pc;
+        }
+        return (target.length == linedCode.length) ? linedPcs[pc] : plainPcs[pc];
+    }
+
+    /**
+     * Replace the code by a copy of the lined code with the TRACE_ instructions, or back. Until the frames running
+     * the old code call or return, they go on in it.
+     */
+    void setTraced(boolean traced) {
+        if (!traced) {
+            code = plainCode;
+            sampledCode = linedCode;
+            return;
+        }
+        int[] copy = linedCode.clone();
+        int pc = 0;
+        while (pc < copy.length) {
+            int op = copy[pc];
+            copy[pc] = OpCode.tracedOf(op);
+            pc += 1 + OpCode.operandCount(op);
+        }
+        code = copy;
+        sampledCode = copy;
+    }
+
+    /**
+     * The deepest the operand stack can go while running this function, computed by the compiler.
+     */
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public CompiledScript getScript() {
+        return script;
+    }
+
+    void attach(CompiledScript script) {
+        this.script = script;
+    }
+
+    /**
+     * @param code the code the pc is in
+     * @return the line of the statement the instruction at pc belongs to, 0 if none
+     */
+    int lineAt(int[] code, int pc) {
+        int linedPc = this.pcIn(linedCode, code, pc);
+        int line = 0;
+        int at = 0;
+        while (at < linedPc && at < linedCode.length) {
+            if (linedCode[at] == OpCode.LINE) {
+                line = linedCode[at + 1];
+            }
+            at += 1 + OpCode.operandCount(linedCode[at]);
+        }
+        return line;
+    }
+
+    /**
+     * Help to debug: one instruction per line.
+     */
+    public String disassemble() {
+        int[] code = linedCode;
+        StringBuilder sb = new StringBuilder();
+        sb.append("function ").append(name).append(parameters).append(" locals=").append(Arrays.toString(localNames)).append('\n');
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            sb.append(String.format("%4d  %s", pc, OpCode.nameOf(op)));
+            for (int i = 1; i <= OpCode.operandCount(op); i++) {
+                sb.append(' ').append(code[pc + i]);
+            }
+            sb.append('\n');
+            pc += 1 + OpCode.operandCount(op);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledFunction{" + name + parameters + ", " + plainCode.length + " ints}";
+    }
+}
@@ -0,0 +1,69 @@
+package com.titanicscriptinterpreter.project.engine.bytecode;
+
+import com.titanicscriptinterpreter.project.engine.lexer.Value;
+
+/**
+ * Output of the compiler for one script: the top-level code, the declared functions and the constant pool they share.
+ */
+public class CompiledScript {
+
+    private final CompiledFunction main;
+    private final CompiledFunction[] functions;
+    private final Object[] constants;
+    // The constants unboxed, see Value. The objects are the constants themselves.
+    private final byte[] constantTags;
+    private final long[] constantPayloads;
+
+    public CompiledScript(CompiledFunction main, CompiledFunction[] functions, Object[] constants) {
+        this.main = main;
+        this.functions = functions;
+        this.constants = constants;
+        this.constantTags = new byte[constants.length];
+        this.constantPayloads = new long[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            constantTags[i] = Value.tagOf(constants[i]);
+            constantPayloads[i] = Value.payloadOf(constants[i]);
+        }
+
+        main.attach(this);
+        for (CompiledFunction function : functions) {
+            function.attach(this);
+        }
+    }
+
+    public CompiledFunction getMain() {
+        return main;
+    }
+
+    public CompiledFunction getFunction(int index) {
+        return functions[index];
+    }
+
+    public CompiledFunction[] getFunctions() {
+        return functions;
+    }
+
+    public Object getConstant(int index) {
+        return constants[index];
+    }
+
+    public Object[] getConstants() {
+        return constants;
+    }
+
+    public byte[] getConstantTags() {
+        return constantTags;
+    }
+
+    public long[] getConstantPayloads() {
+        return constantPayloads;
+    }
+
+    public String disassemble() {
+        StringBuilder sb = new StringBuilder(main.disassemble());
+        for (CompiledFunction function : functions) {
+            sb.append('\n').append(function.disassemble());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,419 @@
+package com.titanicscriptinterpreter.project.engine.bytecode;
+
+import com.titanicscriptinterpreter.project.engine.coverage.CoverageMap;
+import com.titanicscriptinterpreter.project.engine.interpreter.GlobalSymbols;
+import com.titanicscriptinterpreter.project.engine.lexer.BinaryOpExpression;
+import com.titanicscriptinterpreter.project.engine.lexer.CaseBlock;
+import com.titanicscriptinterpreter.project.engine.lexer.Condition;
+import com.titanicscriptinterpreter.project.engine.lexer.ConstantFolder;
+import com.titanicscriptinterpreter.project.engine.lexer.Expression;
+import com.titanicscriptinterpreter.project.engine.lexer.FunctionCallExpression;
+import com.titanicscriptinterpreter.project.engine.lexer.LiteralExpression;
+import com.titanicscriptinterpreter.project.engine.lexer.VariableExpression;
+import com.titanicscriptinterpreter.project.engine.statements.AssignmentStatement;
+import com.titanicscriptinterpreter.project.engine.statements.ExitCodeStatement;
+import com.titanicscriptinterpreter.project.engine.statements.FunctionCallStatement;
+import com.titanicscriptinterpreter.project.engine.statements.FunctionDeclarationStatement;
+import com.titanicscriptinterpreter.project.engine.statements.GlobalStatement;
+import com.titanicscriptinterpreter.project.engine.statements.IfStatement;
+import com.titanicscriptinterpreter.project.engine.statements.LocalStatement;
+import com.titanicscriptinterpreter.project.engine.statements.ReturnStatement;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import com.titanicscriptinterpreter.project.engine.statements.SwitchStatement;
+import com.titanicscriptinterpreter.project.engine.statements.WhileStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the statements produced by the Parser into bytecode for the VirtualMachine.
+ * The generated code must behave exactly like the tree-walking Interpreter does on the same statements.
+ */
+public class Compiler {
+
+    private final GlobalSymbols globalSymbols;
+    private final CoverageMap coverage; // null: no PROBE instructions
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndexes = new HashMap<>();
+    private final List<CompiledFunction> functions = new ArrayList<>();
+
+    // State of the function being compiled. Saved and restored around nested declarations.
+    private int[] code;
+    private int size;
+    private int stackDepth;
+    private int maxStack;
+    private Map<String, Integer> localSlots; // null for the top-level code, where every variable is global
+    private String functionName;
+
+    /**
+     * @param globalSymbols the table of the context the script will run in, global variables are compiled to its slots
+     */
+    public Compiler(GlobalSymbols globalSymbols) {
+        this(globalSymbols, null);
+    }
+
+    /**
+     * @param coverage if not null, the code marks the probes of this map when it runs, see CoverageData
+     */
+    public Compiler(GlobalSymbols globalSymbols, CoverageMap coverage) {
+        this.globalSymbols = globalSymbols;
+        this.coverage = coverage;
+    }
+
+    /**
+     * Compile the top-level statements of a script, and every function declared in it.
+     * The conditions made only of literals are folded first.
+     */
+    public CompiledScript compile(List<Statement> statements) {
+        CompiledFunction main = this.compileFunction("<main>", List.of(), ConstantFolder.fold(statements), null);
+
+        return new CompiledScript(main, functions.toArray(new CompiledFunction[0]), constants.toArray());
+    }
+
+    private CompiledFunction compileFunction(String name, List<String> parameters, List<Statement> body, Map<String, Integer> slots) {
+        int[] savedCode = code;
+        int savedSize = size;
+        int savedStackDepth = stackDepth;
+        int savedMaxStack = maxStack;
+        Map<String, Integer> savedLocalSlots = localSlots;
+        String savedFunctionName = functionName;
+
+        code = new int[64];
+        size = 0;
+        stackDepth = 0;
+        maxStack = 0;
+        localSlots = slots;
+        functionName = name;
+
+        this.compileStatements(body);
+        this.emit(OpCode.CONST, this.constant(null));
+        this.emit(OpCode.RETURN);
+
+        String[] localNames = (slots == null) ? new String[0] : slots.keySet().toArray(new String[0]);
+        CompiledFunction function = new CompiledFunction(name, parameters, localNames, Arrays.copyOf(code, size), maxStack);
+
+        code = savedCode;
+        size = savedSize;
+        stackDepth = savedStackDepth;
+        maxStack = savedMaxStack;
+        localSlots = savedLocalSlots;
+        functionName = savedFunctionName;
+
+        return function;
+    }
+
+    private void compileStatements(List<Statement> statements) {
+        for (Statement stmt : statements) {
+            this.compileStatement(stmt);
+        }
+    }
+
+    private void compileStatement(Statement stmt) {
+        // Once, even for a while loop
+        if (coverage != null && localSlots != null) {
+            this.emitProbe(coverage.lineProbeOf(functionName, stmt.getLine()));
+        }
+        // A while loop marks its line where each iteration starts. A 'local' runs nothing, but can be traced
+        if (!(stmt instanceof WhileStatement)) {
+            this.emitLine(stmt);
+        }
+
+        if (stmt instanceof IfStatement ifStatement) {
+            this.compileIfStatement(ifStatement);
+        } else if (stmt instanceof FunctionDeclarationStatement functionDeclarationStatement) {
+            this.compileFunctionDeclarationStatement(functionDeclarationStatement);
+        } else if (stmt instanceof FunctionCallStatement functionCallStatement) {
+            this.compileCall(functionCallStatement.getFunctionName(), functionCallStatement.getArguments());
+            this.emit(OpCode.POP);
+        } else if (stmt instanceof GlobalStatement globalStatement) {
+            for (String varName : globalStatement.getVariableNames()) {
+                this.emit(OpCode.DECLARE_GLOBAL, globalSymbols.slotOf(varName));
+            }
+        } else if (stmt instanceof AssignmentStatement assignmentStatement) {
+            this.compileExpression(assignmentStatement.getRightHandSide());
+            this.compileStore(assignmentStatement.getVariableName());
+        } else if (stmt instanceof ExitCodeStatement) {
+            this.emit(OpCode.EXIT);
+        } else if (stmt instanceof SwitchStatement switchStatement) {
+            this.compileSwitchStatement(switchStatement);
+        } else if (stmt instanceof LocalStatement localStatement) {
+            // In a function the slots already exist and start at zero, there is nothing to run
+            if (localSlots == null) {
+                for (String varName : localStatement.getVariableNames()) {
+                    this.emit(OpCode.DECLARE_LOCAL, globalSymbols.slotOf(varName));
+                }
+            }
+        } else if (stmt instanceof WhileStatement whileStatement) {
+            this.compileWhileStatement(whileStatement);
+        } else if (stmt instanceof ReturnStatement returnStatement) {
+            // A 'return' without value returns null, like reaching the end of the function
+            if (returnStatement.getReturnValue() == null) {
+                this.emit(OpCode.CONST, this.constant(null));
+            } else {
+                this.compileExpression(returnStatement.getReturnValue());
+            }
+            this.emit(OpCode.RETURN);
+        } else {
+            System.err.println("Unknown statement: " + stmt);
+        }
+    }
+
+    /**
+     * In the functions only, the Sampler does not see the top-level code.
+     */
+    private void emitLine(Statement stmt) {
+        if (localSlots != null && stmt.getLine() > 0) {
+            this.emit(OpCode.LINE, stmt.getLine());
+        }
+    }
+
+    private void emitBranchProbe(Statement stmt, int branch) {
+        if (coverage != null && localSlots != null) {
+            this.emitProbe(coverage.branchProbeOf(functionName, stmt.getLine(), branch));
+        }
+    }
+
+    private void emitProbe(int probe) {
+        if (probe >= 0) {
+            this.emit(OpCode.PROBE, probe);
+        }
+    }
+
+    private void compileIfStatement(IfStatement ifStmt) {
+        this.compileExpression(ifStmt.getCondition());
+        int jumpToElse = this.emitJump(OpCode.JUMP_IF_FALSE);
+
+        this.emitBranchProbe(ifStmt, 0);
+        this.compileStatements(ifStmt.getThenStatements());
+        int jumpToEnd = this.emitJump(OpCode.JUMP);
+
+        this.patchJump(jumpToElse);
+        this.emitBranchProbe(ifStmt, 1);
+        this.compileStatements(ifStmt.getElseStatements());
+        this.patchJump(jumpToEnd);
+    }
+
+    private void compileWhileStatement(WhileStatement stmt) {
+        int start = size;
+        this.emitLine(stmt);
+        this.compileExpression(stmt.getCondition());
+        int jumpToEnd = this.emitJump(OpCode.JUMP_IF_FALSE);
+
+        this.compileStatements(stmt.getBody());
+        this.emit(OpCode.JUMP, start);
+
+        this.patchJump(jumpToEnd);
+    }
+
+    /**
+     * The switch value stays on the stack while the cases are tested, and is dropped once a case matched or none did.
+     */
+    private void compileSwitchStatement(SwitchStatement stmt) {
+        this.compileExpression(stmt.getSwitchExpression());
+
+        List<Integer> jumpsToEnd = new ArrayList<>();
+        List<CaseBlock> cases = stmt.getCases();
+        for (int i = 0; i < cases.size(); i++) {
+            CaseBlock cb = cases.get(i);
+            this.emit(OpCode.DUP);
+            this.compileExpression(cb.getValue());
+            this.emit(OpCode.EQ);
+            int jumpToNextCase = this.emitJump(OpCode.JUMP_IF_FALSE);
+
+            this.emit(OpCode.POP);
+            this.emitBranchProbe(stmt, i);
+            this.compileStatements(cb.getStatements());
+            jumpsToEnd.add(this.emitJump(OpCode.JUMP));
+
+            // The switch value is still there when we land on the next case
+            stackDepth++;
+            this.patchJump(jumpToNextCase);
+        }
+        // Only reached when no case matched
+        this.emit(OpCode.POP);
+        this.emitBranchProbe(stmt, cases.size());
+
+        for (int jump : jumpsToEnd) {
+            this.patchJump(jump);
+        }
+    }
+
+    private void compileFunctionDeclarationStatement(FunctionDeclarationStatement stmt) {
+        Map<String, Integer> slots = LocalResolver.resolve(stmt.getParameters(), stmt.getBody());
+        CompiledFunction function = this.compileFunction(stmt.getFunctionName(), stmt.getParameters(), stmt.getBody(), slots);
+        functions.add(function);
+
+        // Registration happens when the declaration is reached, like in the Interpreter
+        this.emit(OpCode.DEFINE, functions.size() - 1);
+    }
+
+    private void compileExpression(Expression expr) {
+        if (expr instanceof LiteralExpression literalExpression) {
+            this.emit(OpCode.CONST, this.constant(literalExpression.getValue()));
+        } else if (expr instanceof VariableExpression variableExpression) {
+            this.compileLoad(variableExpression.getName());
+        } else if (expr instanceof FunctionCallExpression functionCallExpression) {
+            this.compileCall(functionCallExpression.getFunctionName(), functionCallExpression.getArguments());
+        } else if (expr instanceof BinaryOpExpression binaryOpExpression) {
+            this.compileBinaryOpExpression(binaryOpExpression);
+        } else if (expr instanceof Condition condition) {
+            this.compileCondition(condition);
+        } else {
+            System.err.println("Unknown expression type: " + expr);
+            this.emit(OpCode.CONST, this.constant(null));
+        }
+    }
+
+    private void compileLoad(String varName) {
+        Integer slot = (localSlots == null) ? null : localSlots.get(varName);
+        if (slot != null) {
+            this.emit(OpCode.LOAD_LOCAL, slot);
+        } else {
+            this.emit(OpCode.LOAD_GLOBAL, globalSymbols.slotOf(varName));
+        }
+    }
+
+    private void compileStore(String varName) {
+        Integer slot = (localSlots == null) ? null : localSlots.get(varName);
+        if (slot != null) {
+            this.emit(OpCode.STORE_LOCAL, slot);
+        } else {
+            this.emit(OpCode.STORE_GLOBAL, globalSymbols.slotOf(varName));
+        }
+    }
+
+    private void compileCall(String funcName, List<Expression> argExprs) {
+        for (Expression argExpr : argExprs) {
+            this.compileExpression(argExpr);
+        }
+        this.emit(OpCode.CALL, this.constant(funcName), argExprs.size());
+    }
+
+    /** Same operators as Interpreter.evaluateCondition, the unknown ones are false. */
+    private void compileCondition(Condition cond) {
+        this.compileExpression(cond.getLeftExpr());
+        this.compileExpression(cond.getRightExpr());
+
+        switch (cond.getOperator()) {
+            case "=":
+                this.emit(OpCode.EQ);
+                break;
+            case "!=":
+                this.emit(OpCode.NE);
+                break;
+            case ">":
+                this.emit(OpCode.GT);
+                break;
+            default:
+                this.emit(OpCode.POP);
+                this.emit(OpCode.POP);
+                this.emit(OpCode.CONST, this.constant(false));
+                break;
+        }
+    }
+
+    private void compileBinaryOpExpression(BinaryOpExpression binExpr) {
+        this.compileExpression(binExpr.getLeft());
+        this.compileExpression(binExpr.getRight());
+
+        switch (binExpr.getOperator()) {
+            case "=":
+                this.emit(OpCode.EQ);
+                break;
+            case "!=":
+                this.emit(OpCode.NE);
+                break;
+            case ">":
+                this.emit(OpCode.GT);
+                break;
+            case "<":
+                this.emit(OpCode.LT);
+                break;
+            case "&":
+                this.emit(OpCode.AND);
+                break;
+            default:
+                System.err.println("Unsupported operator: " + binExpr.getOperator());
+                this.emit(OpCode.POP);
+                this.emit(OpCode.POP);
+                this.emit(OpCode.CONST, this.constant(null));
+                break;
+        }
+    }
+
+    /**
+     * Index of the value in the constant pool, added if not already there.
+     * Function names go in the pool too.
+     */
+    private int constant(Object value) {
+        Integer index = constantIndexes.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndexes.put(value, index);
+        }
+        return index;
+    }
+
+    private void emit(int opCode, int... operands) {
+        this.ensureCapacity(1 + operands.length);
+        code[size++] = opCode;
+        for (int operand : operands) {
+            code[size++] = operand;
+        }
+        this.trackStack(opCode, operands);
+    }
+
+    /**
+     * Emit a jump whose target is not known yet.
+     * @return the position of the target operand, to give to patchJump()
+     */
+    private int emitJump(int opCode) {
+        this.emit(opCode, -1);
+        return size - 1;
+    }
+
+    /** Make the jump land on the next emitted instruction. */
+    private void patchJump(int operandPosition) {
+        code[operandPosition] = size;
+    }
+
+    private void trackStack(int opCode, int[] operands) {
+        switch (opCode) {
+            case OpCode.CONST:
+            case OpCode.LOAD_GLOBAL:
+            case OpCode.LOAD_LOCAL:
+            case OpCode.DUP:
+                stackDepth++;
+                break;
+            case OpCode.STORE_GLOBAL:
+            case OpCode.STORE_LOCAL:
+            case OpCode.POP:
+            case OpCode.EQ:
+            case OpCode.NE:
+            case OpCode.GT:
+            case OpCode.LT:
+            case OpCode.AND:
+            case OpCode.JUMP_IF_FALSE:
+            case OpCode.RETURN:
+                stackDepth--;
+                break;
+            case OpCode.CALL:
+            case OpCode.CALL_NATIVE:
+            case OpCode.CALL_FUNCTION:
+                stackDepth += 1 - operands[1];
+                break;
+            default:
+                break;
+        }
+        maxStack = Math.max(maxStack, stackDepth);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.titanicscriptinterpreter.project.engine.bytecode;
+
+/**
+ * A script suspended by a native (see Suspension): its frames, kept on the heap, and nothing else.
+ * Give it to VirtualMachine.resume() once, with the value of the native call.
+ */
+public final class Continuation {
+
+    private final Frame frame; // Suspended after its CALL_NATIVE, the result goes at frame.sp
+    private final Object reason;
+    private boolean resumed;
+
+    Continuation(Frame frame, Object reason) {
+        this.frame = frame;
+        this.reason = reason;
+    }
+
+    /**
+     * @return the Suspension returned by the native
+     */
+    public Object getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the function the script is suspended in
+     */
+    public String getFunctionName() {
+        return frame.function.getName();
+    }
+
+    /**
+     * The innermost frame, without resuming.
+     */
+    Frame frame() {
+        if (resumed) {
+            throw new IllegalStateException("This script was already resumed");
+        }
+        return frame;
+    }
+
+    Frame take() {
+        if (resumed) {
+            throw new IllegalStateException("This script was already resumed");
+        }
+        resumed = true;
+        return frame;
+    }
+}
@@ -0,0 +1,58 @@
+package com.titanicscriptinterpreter.project.engine.bytecode;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.lexer.Value;
+import com.titanicscriptinterpreter.project.engine.lexer.ValueType;
+import com.titanicscriptinterpreter.project.engine.profiling.FunctionCallEvent;
+
+/**
+ * Activation record of a running function. Frames are linked to their caller
+ * so that a script calling another script function does not grow the Java stack.
+ *
+ * The locals and then the operand stack are stored unboxed (see Value) in three parallel arrays:
+ * the type tags, the payloads, and the objects of the values when there is one.
+ */
+final class Frame {
+
+    final CompiledFunction function;
+    final ScriptContext context; // Where the global variables are read and written
+    final byte[] tags;
+    final long[] payloads;
+    final Object[] refs;
+    final Frame caller;
+    final int depth; // 0 for the function called by the game
+    int pc;
+    int[] code; // The code pc is in, null until the frame runs: see CompiledFunction.pcIn()
+    int sp; // Starts after the locals
+    FunctionCallEvent event; // When the call is profiled, see Profiling
+    int tracedLine; // The statement running while traced, to tell ScriptListener.statementExited()
+
+    /**
+     * The local variables that are not parameters start at zero, like after a 'local' statement.
+     * The parameters start at null, until setArgument().
+     */
+    Frame(CompiledFunction function, ScriptContext context, Frame caller) {
+        int localCount = function.getLocalCount();
+        this.function = function;
+        this.context = context;
+        this.tags = new byte[localCount + function.getMaxStack()];
+        this.payloads = new long[tags.length];
+        this.refs = new Object[tags.length];
+        this.caller = caller;
+        this.depth = (caller == null) ? 0 : caller.depth + 1;
+        this.sp = localCount;
+
+        for (int slot = function.getParameters().size(); slot < localCount; slot++) {
+            tags[slot] = ValueType.INT;
+        }
+    }
+
+    /**
+     * For the arguments coming from outside the VM, as objects.
+     */
+    void setArgument(int slot, Object value) {
+        tags[slot] = Value.tagOf(value);
+        payloads[slot] = Value.payloadOf(value);
+        refs[slot] = value;
+    }
+}
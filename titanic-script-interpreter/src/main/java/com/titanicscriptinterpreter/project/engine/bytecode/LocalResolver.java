@@ -0,0 +1,55 @@
+package com.titanicscriptinterpreter.project.engine.bytecode;
+
+import com.titanicscriptinterpreter.project.engine.lexer.CaseBlock;
+import com.titanicscriptinterpreter.project.engine.statements.IfStatement;
+import com.titanicscriptinterpreter.project.engine.statements.LocalStatement;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import com.titanicscriptinterpreter.project.engine.statements.SwitchStatement;
+import com.titanicscriptinterpreter.project.engine.statements.WhileStatement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives a fixed slot in the frame to each parameter and 'local' variable of a function.
+ *
+ * The binding is decided here once for the whole function: a name declared with 'local' (anywhere in the body)
+ * or as a parameter is local, every other name is global. Parameters take the first slots, in order.
+ */
+public class LocalResolver {
+
+    private LocalResolver() {
+    }
+
+    public static Map<String, Integer> resolve(List<String> parameters, List<Statement> body) {
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        for (String paramName : parameters) {
+            slots.putIfAbsent(paramName, slots.size());
+        }
+        collectLocals(body, slots);
+
+        return slots;
+    }
+
+    /**
+     * Nested blocks share the function frame. Nested function declarations get their own, so they are skipped.
+     */
+    private static void collectLocals(List<Statement> statements, Map<String, Integer> slots) {
+        for (Statement stmt : statements) {
+            if (stmt instanceof LocalStatement localStatement) {
+                for (String varName : localStatement.getVariableNames()) {
+                    slots.putIfAbsent(varName, slots.size());
+                }
+            } else if (stmt instanceof IfStatement ifStatement) {
+                collectLocals(ifStatement.getThenStatements(), slots);
+                collectLocals(ifStatement.getElseStatements(), slots);
+            } else if (stmt instanceof WhileStatement whileStatement) {
+                collectLocals(whileStatement.getBody(), slots);
+            } else if (stmt instanceof SwitchStatement switchStatement) {
+                for (CaseBlock cb : switchStatement.getCases()) {
+                    collectLocals(cb.getStatements(), slots);
+                }
+            }
+        }
+    }
+}
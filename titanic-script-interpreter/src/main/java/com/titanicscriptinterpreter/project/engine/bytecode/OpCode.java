@@ -0,0 +1,82 @@
+package com.titanicscriptinterpreter.project.engine.bytecode;
+
+/**
+ * Instruction set of the VM. Each instruction is an int in the code array, followed by its operands.
+ * The comments give the operands and the effect on the operand stack.
+ */
+public final class OpCode {
+
+    public static final int CONST = 0;          // constIndex          -> push constants[constIndex]
+    public static final int LOAD_GLOBAL = 1;    // globalSlot          -> push the variable value
+    public static final int STORE_GLOBAL = 2;   // globalSlot          value ->
+    public static final int DECLARE_GLOBAL = 3; // globalSlot
+    public static final int DECLARE_LOCAL = 4;  // globalSlot, only in top-level code where locals live in the root context
+    public static final int CALL = 5;           // nameIndex, argCount, rewritten to CALL_FUNCTION or CALL_NATIVE when the VM links the script
+    public static final int POP = 6;            //                     value ->
+    public static final int DUP = 7;            //                     value -> value, value
+    public static final int EQ = 8;             //                     left, right -> boolean
+    public static final int NE = 9;
+    public static final int GT = 10;
+    public static final int LT = 11;
+    public static final int AND = 12;
+    public static final int JUMP = 13;          // target
+    public static final int JUMP_IF_FALSE = 14; // target              value ->
+    public static final int DEFINE = 15;        // functionIndex
+    public static final int EXIT = 16;
+    public static final int RETURN = 17;        //                     value ->, pushed on the stack of the caller
+    public static final int LOAD_LOCAL = 18;    // slot                -> push locals[slot]
+    public static final int STORE_LOCAL = 19;   // slot                value ->
+    public static final int CALL_NATIVE = 20;   // handle, argCount    args... -> result
+    public static final int CALL_FUNCTION = 21; // functionSlot, argCount args... -> result
+    public static final int LINE = 22;          // line, at the start of each statement of a function, only in its lined code (see CompiledFunction)
+    public static final int PROBE = 23;         // probe, marks it in the CoverageData, only compiled with a CoverageMap
+
+    // Swapped in for LINE, STORE_LOCAL, STORE_GLOBAL and RETURN while a ScriptHooks is attached, same operands
+    public static final int TRACE_LINE = 24;
+    public static final int TRACE_STORE_LOCAL = 25;
+    public static final int TRACE_STORE_GLOBAL = 26;
+    public static final int TRACE_RETURN = 27;
+
+    private static final String[] NAMES = {
+        "CONST", "LOAD_GLOBAL", "STORE_GLOBAL", "DECLARE_GLOBAL", "DECLARE_LOCAL", "CALL", "POP", "DUP",
+        "EQ", "NE", "GT", "LT", "AND", "JUMP", "JUMP_IF_FALSE", "DEFINE", "EXIT", "RETURN",
+        "LOAD_LOCAL", "STORE_LOCAL", "CALL_NATIVE", "CALL_FUNCTION", "LINE", "PROBE",
+        "TRACE_LINE", "TRACE_STORE_LOCAL", "TRACE_STORE_GLOBAL", "TRACE_RETURN"
+    };
+
+    private static final int[] OPERAND_COUNTS = {
+        1, 1, 1, 1, 1, 2, 0, 0,
+        0, 0, 0, 0, 0, 1, 1, 1, 0, 0,
+        1, 1, 2, 2, 1, 1,
+        1, 1, 1, 0
+    };
+
+    private OpCode() {
+    }
+
+    public static String nameOf(int opCode) {
+        return NAMES[opCode];
+    }
+
+    public static int operandCount(int opCode) {
+        return OPERAND_COUNTS[opCode];
+    }
+
+    /**
+     * @return the TRACE_ instruction replacing this one while traced, or itself
+     */
+    public static int tracedOf(int opCode) {
+        switch (opCode) {
+            case LINE:
+                return TRACE_LINE;
+            case STORE_LOCAL:
+                return TRACE_STORE_LOCAL;
+            case STORE_GLOBAL:
+                return TRACE_STORE_GLOBAL;
+            case RETURN:
+                return TRACE_RETURN;
+            default:
+                return opCode;
+        }
+    }
+}
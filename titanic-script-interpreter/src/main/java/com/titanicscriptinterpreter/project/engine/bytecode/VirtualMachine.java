@@ -0,0 +1,841 @@
+package com.titanicscriptinterpreter.project.engine.bytecode;
+
+import com.titanicscriptinterpreter.project.engine.coverage.CoverageData;
+import com.titanicscriptinterpreter.project.engine.debug.ScriptHooks;
+import com.titanicscriptinterpreter.project.engine.debug.ScriptListener;
+import com.titanicscriptinterpreter.project.engine.interpreter.BuiltinFunctions;
+import com.titanicscriptinterpreter.project.engine.interpreter.EmptyFunctionResult;
+import com.titanicscriptinterpreter.project.engine.interpreter.ExitScriptException;
+import com.titanicscriptinterpreter.project.engine.interpreter.NativeRegistry;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptEngine;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptLinkException;
+import com.titanicscriptinterpreter.project.engine.interpreter.Suspension;
+import com.titanicscriptinterpreter.project.engine.lexer.Value;
+import com.titanicscriptinterpreter.project.engine.lexer.ValueType;
+import com.titanicscriptinterpreter.project.engine.metrics.ScriptMetrics;
+import com.titanicscriptinterpreter.project.engine.profiling.FunctionCallEvent;
+import com.titanicscriptinterpreter.project.engine.profiling.Profiling;
+import com.titanicscriptinterpreter.project.engine.profiling.ShadowStack;
+import com.titanicscriptinterpreter.project.engine.snapshot.SnapshotException;
+import com.titanicscriptinterpreter.project.engine.snapshot.SnapshotReader;
+import com.titanicscriptinterpreter.project.engine.snapshot.SnapshotWriter;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Runs the bytecode produced by the Compiler: one dispatch loop over an operand stack.
+ *
+ * Every call runs on the globals of the context it is given, so once frozen the VM can be shared
+ * by sessions running on different threads, each with its own root context (see ScriptRuntime).
+ */
+public class VirtualMachine implements ScriptEngine {
+
+    // Returned by execute() when the script ran 'exitcode'
+    private static final Object EXITED = new Object();
+
+    private final NativeRegistry natives;
+    private boolean frozen; // No more scripts can be loaded, the function table does not change anymore
+    private volatile ScriptMetrics metrics; // null: nothing measured. Can change while the sessions run
+    private CoverageData coverage; // null: the code is compiled without probes
+    private volatile ScriptHooks hooks; // null: the functions run their untraced code
+
+    // The function table, indexed by the slots the CALL_FUNCTION instructions are linked to
+    private final Map<String, Integer> functionSlots = new HashMap<>();
+    private CompiledFunction[] functionTable = new CompiledFunction[16];
+    private String[] functionNames = new String[16];
+    private final Set<String> declaredFunctions = new HashSet<>();
+    private final List<CompiledScript> linkedScripts = new ArrayList<>();
+
+    public VirtualMachine(ScriptContext context) {
+        this(context, BuiltinFunctions.createRegistry());
+    }
+
+    /**
+     * The context is not kept, like for the Interpreter the scripts run on the one given to load() and callFunction().
+     */
+    public VirtualMachine(ScriptContext context, NativeRegistry natives) {
+        this.natives = natives;
+    }
+
+    /**
+     * After this, the VM only reads its state and callFunction() can run on several threads at once.
+     * The natives must all be registered too.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * Measure the calls of the game and of the natives from now on, null to stop. Even once frozen.
+     */
+    public void setMetrics(ScriptMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ScriptMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Record the lines and branches run in the data, from the scripts loaded next on. Its map must hold them.
+     * The code of the scripts already loaded has no probes: set it before loading any, and never reset it.
+     */
+    public void setCoverage(CoverageData coverage) {
+        if (!linkedScripts.isEmpty()) {
+            throw new IllegalStateException("Set the coverage before loading the scripts");
+        }
+        this.coverage = coverage;
+    }
+
+    /**
+     * Swap the traced code in for every function loaded, and the ones loaded later. See ScriptHooks.
+     */
+    @Override
+    public synchronized void attach(ScriptHooks hooks) {
+        this.detach();
+        hooks.wrapNatives(natives);
+        for (CompiledScript script : linkedScripts) {
+            setTraced(script, true);
+        }
+        this.hooks = hooks;
+    }
+
+    @Override
+    public synchronized void detach() {
+        ScriptHooks attached = hooks;
+        if (attached == null) {
+            return;
+        }
+        hooks = null;
+        for (CompiledScript script : linkedScripts) {
+            setTraced(script, false);
+        }
+        attached.unwrapNatives(natives);
+    }
+
+    private static void setTraced(CompiledScript script, boolean traced) {
+        script.getMain().setTraced(traced);
+        for (CompiledFunction function : script.getFunctions()) {
+            function.setTraced(traced);
+        }
+    }
+
+    @Override
+    public void load(List<Statement> statements, ScriptContext ctx) {
+        Compiler compiler = new Compiler(ctx.getRootContext().getGlobalSymbols(), (coverage == null) ? null : coverage.getMap());
+        this.run(compiler.compile(statements), ctx);
+    }
+
+    /**
+     * Run the top-level code of a compiled script, which registers its functions.
+     * The script must have been compiled against the global symbols of this context.
+     */
+    public void run(CompiledScript script, ScriptContext ctx) {
+        if (frozen) {
+            throw new IllegalStateException("The VM is frozen, no script can be loaded anymore");
+        }
+        this.link(script);
+        if (hooks != null) {
+            setTraced(script, true);
+        }
+        ScriptContext root = ctx.getRootContext();
+        root.ensureGlobalCapacity(root.getGlobalSymbols().size());
+        if (this.execute(new Frame(script.getMain(), root, null)) == EXITED) {
+            throw new ExitScriptException();
+        }
+    }
+
+    /**
+     * Two possibilities, checked in this order like in the Interpreter:
+     * - A function declared in the script.
+     * - A function provided by the game engine.
+     */
+    @Override
+    public Object callFunction(String funcName, List<Object> argValues, ScriptContext ctx) {
+        ScriptMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return this.callByName(funcName, argValues, ctx);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return this.callByName(funcName, argValues, ctx);
+        } catch (ExitScriptException e) {
+            metrics.countExit();
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.countFailure();
+            throw e;
+        } finally {
+            metrics.recordFunction(funcName, System.nanoTime() - start);
+        }
+    }
+
+    private Object callByName(String funcName, List<Object> argValues, ScriptContext ctx) {
+        Integer slot = functionSlots.get(funcName);
+        CompiledFunction function = (slot == null) ? null : functionTable[slot];
+        if (function != null) {
+            Object result = this.execute(this.entryFrame(function, argValues, ctx));
+            if (result == EXITED) {
+                throw new ExitScriptException();
+            } else if (result instanceof Continuation) {
+                throw new IllegalStateException("A native suspended the script, but it was not started by start()");
+            }
+            return result;
+        }
+
+        return this.callNative(funcName, argValues, ctx);
+    }
+
+    /**
+     * Like callFunction(), but the natives waiting for something (the answer of the player...) suspend the script
+     * instead of blocking the thread. Then the result is a Continuation, to give to resume() with the value of the native call.
+     */
+    public Object start(String funcName, List<Object> argValues, ScriptContext ctx) {
+        Integer slot = functionSlots.get(funcName);
+        CompiledFunction function = (slot == null) ? null : functionTable[slot];
+        if (function == null) {
+            // Nothing to suspend
+            return this.callNative(funcName, argValues, ctx);
+        }
+
+        return this.executeSuspendable(this.entryFrame(function, argValues, ctx));
+    }
+
+    /**
+     * Continue a suspended script, the native call that suspended it returning the given value.
+     *
+     * @return the result of the function given to start(), or a Continuation if the script is suspended again
+     */
+    public Object resume(Continuation continuation, Object value) {
+        Frame frame = continuation.take();
+        push(frame, frame.sp, value);
+        frame.sp++;
+
+        return this.executeSuspendable(frame);
+    }
+
+    /**
+     * Save the frames of a suspended script, see SnapshotFormat. The Continuation can still be resumed after.
+     */
+    public void saveFrames(Continuation continuation, SnapshotWriter out) throws IOException {
+        List<Frame> frames = new ArrayList<>();
+        for (Frame frame = continuation.frame(); frame != null; frame = frame.caller) {
+            frames.add(frame);
+        }
+
+        out.writeVarInt(frames.size());
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            Frame frame = frames.get(i);
+            out.writeString(frame.function.getName());
+            int[] plainCode = frame.function.getPlainCode();
+            out.writeVarInt(plainCode.length);
+            out.writeVarInt(frame.function.pcIn(plainCode, frame.code, frame.pc));
+            out.writeVarInt(frame.sp);
+            out.writeValues(frame.tags, frame.payloads, frame.refs, frame.sp);
+        }
+    }
+
+    /**
+     * Rebuild the frames saved by saveFrames(), on the globals of the given context.
+     * The functions must be the ones of the snapshot, checked by name and code length.
+     */
+    public Continuation restoreFrames(SnapshotReader in, ScriptContext ctx, Suspension reason) {
+        int count = in.readVarInt();
+        if (count == 0) {
+            throw new SnapshotException("Corrupted snapshot, a suspended script without frames");
+        }
+
+        Frame frame = null;
+        for (int i = 0; i < count; i++) {
+            String funcName = in.readString();
+            Integer slot = functionSlots.get(funcName);
+            CompiledFunction function = (slot == null) ? null : functionTable[slot];
+            int codeLength = in.readVarInt();
+            int pc = in.readVarInt();
+            int sp = in.readVarInt();
+            if (function == null || function.getPlainCode().length != codeLength || pc > codeLength
+                    || sp > function.getLocalCount() + function.getMaxStack()) {
+                throw new SnapshotException("The snapshot was made with other scripts, function " + funcName + " differs");
+            }
+
+            frame = new Frame(function, ctx.getRootContext(), frame);
+            frame.pc = pc;
+            frame.code = function.getPlainCode();
+            frame.sp = sp;
+            in.readValues(frame.tags, frame.payloads, frame.refs, sp);
+        }
+        return new Continuation(frame, reason);
+    }
+
+    /**
+     * The frames of a suspended script copied on the given globals, for a fork of its session.
+     */
+    public Continuation copyContinuation(Continuation continuation, ScriptContext ctx, Suspension reason) {
+        return new Continuation(copyFrames(continuation.frame(), ctx.getRootContext()), reason);
+    }
+
+    private static Frame copyFrames(Frame frame, ScriptContext root) {
+        Frame caller = (frame.caller == null) ? null : copyFrames(frame.caller, root);
+        Frame copy = new Frame(frame.function, root, caller);
+        System.arraycopy(frame.tags, 0, copy.tags, 0, frame.sp);
+        System.arraycopy(frame.payloads, 0, copy.payloads, 0, frame.sp);
+        System.arraycopy(frame.refs, 0, copy.refs, 0, frame.sp);
+        copy.pc = frame.pc;
+        copy.code = frame.code;
+        copy.sp = frame.sp;
+        return copy;
+    }
+
+    private Object executeSuspendable(Frame frame) {
+        ScriptContext root = frame.context;
+        root.setSuspendable(true);
+        Object result;
+        try {
+            result = this.execute(frame);
+        } finally {
+            root.setSuspendable(false);
+        }
+
+        if (result == EXITED) {
+            throw new ExitScriptException();
+        }
+        return result;
+    }
+
+    private Frame entryFrame(CompiledFunction function, List<Object> argValues, ScriptContext ctx) {
+        Frame frame = new Frame(function, ctx.getRootContext(), null);
+        int paramCount = function.getParameters().size();
+        for (int i = 0; i < paramCount && i < argValues.size(); i++) {
+            frame.setArgument(i, argValues.get(i));
+        }
+        if (Profiling.isEnabled()) {
+            frame.event = Profiling.begin(function.getName(), false, 0, argValues.size());
+        }
+        return frame;
+    }
+
+    private Object callNative(String funcName, List<Object> argValues, ScriptContext ctx) {
+        int handle = natives.handleOf(funcName);
+        if (handle < 0) {
+            System.err.println("Unknown function: " + funcName);
+            return EmptyFunctionResult.INSTANCE;
+        }
+        if (!natives.acceptsArgumentCount(handle, argValues.size())) {
+            System.err.println("Function " + funcName + " expects " + natives.arityOf(handle) + " argument(s), got " + argValues.size());
+            return EmptyFunctionResult.INSTANCE;
+        }
+
+        return this.invokeNative(handle, argValues, ctx, null);
+    }
+
+    /**
+     * Rewrite every CALL of the script to a direct call: CALL_FUNCTION with the slot of the function in the function table
+     * if a script, this one or a previously loaded one, declares the name, otherwise CALL_NATIVE with the handle of the native.
+     * Unknown names are reported now and get a slot, calling them does nothing unless a script declaring them is loaded later.
+     * The previously loaded scripts are linked again when this one declares a function with the name of a native.
+     *
+     * @throws ScriptLinkException if a native is called with a wrong number of arguments
+     */
+    private void link(CompiledScript script) {
+        Set<String> declared = new HashSet<>(declaredFunctions);
+        boolean shadowsNative = false;
+        for (CompiledFunction function : script.getFunctions()) {
+            shadowsNative |= declared.add(function.getName()) && natives.handleOf(function.getName()) >= 0;
+        }
+
+        Set<String> unknown = new TreeSet<>();
+        List<String> errors = new ArrayList<>();
+        this.link(script.getMain(), script, declared, unknown, errors);
+        for (CompiledFunction function : script.getFunctions()) {
+            this.link(function, script, declared, unknown, errors);
+        }
+
+        if (!errors.isEmpty()) {
+            throw new ScriptLinkException(String.join(System.lineSeparator(), errors));
+        }
+        declaredFunctions.addAll(declared);
+
+        if (shadowsNative) {
+            for (CompiledScript linked : linkedScripts) {
+                this.relinkNatives(linked.getMain());
+                for (CompiledFunction function : linked.getFunctions()) {
+                    this.relinkNatives(function);
+                }
+            }
+        }
+        linkedScripts.add(script);
+
+        for (String funcName : unknown) {
+            System.err.println("Unknown function: " + funcName);
+        }
+    }
+
+    private void link(CompiledFunction function, CompiledScript script, Set<String> declared, Set<String> unknown, List<String> errors) {
+        int[] code = function.getLinedCode();
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            if (op == OpCode.CALL) {
+                String funcName = (String) script.getConstant(code[pc + 1]);
+                int argCount = code[pc + 2];
+                int handle = natives.handleOf(funcName);
+                if (declared.contains(funcName) || handle < 0) {
+                    if (handle < 0 && !declared.contains(funcName)) {
+                        unknown.add(funcName);
+                    }
+                    function.patch(pc, OpCode.CALL_FUNCTION, this.slotOf(funcName));
+                } else if (natives.acceptsArgumentCount(handle, argCount)) {
+                    function.patch(pc, OpCode.CALL_NATIVE, handle);
+                } else {
+                    errors.add("Function " + funcName + " expects " + natives.arityOf(handle) + " argument(s), got " + argCount);
+                }
+            }
+            pc += 1 + OpCode.operandCount(op);
+        }
+    }
+
+    private void relinkNatives(CompiledFunction function) {
+        int[] code = function.getLinedCode();
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            if (op == OpCode.CALL_NATIVE) {
+                String funcName = natives.nameOf(code[pc + 1]);
+                if (declaredFunctions.contains(funcName)) {
+                    function.patch(pc, OpCode.CALL_FUNCTION, this.slotOf(funcName));
+                }
+            }
+            pc += 1 + OpCode.operandCount(op);
+        }
+    }
+
+    private int slotOf(String funcName) {
+        Integer slot = functionSlots.get(funcName);
+        if (slot == null) {
+            slot = functionSlots.size();
+            if (slot == functionTable.length) {
+                functionTable = Arrays.copyOf(functionTable, slot * 2);
+                functionNames = Arrays.copyOf(functionNames, slot * 2);
+            }
+            functionNames[slot] = funcName;
+            functionSlots.put(funcName, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * A CALL_FUNCTION to a slot with no function yet: a name declared by a script but not registered yet,
+     * then the native with the same name is called like in the Interpreter, or an unknown name.
+     */
+    private Object callUndefined(int slot, List<Object> argValues, ScriptContext ctx, Frame caller) {
+        String funcName = functionNames[slot];
+        int handle = natives.handleOf(funcName);
+        if (handle < 0) {
+            // Reported when the script was linked
+            return EmptyFunctionResult.INSTANCE;
+        }
+        if (!natives.acceptsArgumentCount(handle, argValues.size())) {
+            System.err.println("Function " + funcName + " expects " + natives.arityOf(handle) + " argument(s), got " + argValues.size());
+            return EmptyFunctionResult.INSTANCE;
+        }
+
+        return this.invokeNative(handle, argValues, ctx, caller);
+    }
+
+    /**
+     * Every native call goes through here, to be profiled and measured when asked.
+     *
+     * @param caller null for a call of the game
+     */
+    private Object invokeNative(int handle, List<Object> argValues, ScriptContext ctx, Frame caller) {
+        ScriptMetrics metrics = this.metrics;
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        Object result = Profiling.isEnabled()
+                ? Profiling.callNative(natives, handle, argValues, ctx, (caller == null) ? 0 : caller.depth + 1, (caller == null) ? null : caller.event)
+                : natives.call(handle, argValues, ctx);
+        if (metrics != null) {
+            metrics.recordNative(handle, System.nanoTime() - start);
+            if (result instanceof Suspension) {
+                metrics.countSuspension();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * At a TRACE_LINE: the statement before in the frame is exited, this one entered.
+     */
+    private void traceLine(Frame frame, int line) {
+        ScriptHooks hooks = this.hooks;
+        if (hooks == null) {
+            // Detached, the frame runs the untraced code from its next call or return
+            return;
+        }
+        ScriptListener listener = hooks.getListener();
+        String function = frame.function.getName();
+        if (frame.tracedLine > 0) {
+            listener.statementExited(function, frame.tracedLine, frame.context);
+        }
+        frame.tracedLine = line;
+        listener.statementEntered(function, line, frame.context);
+        if (hooks.isBreakpoint(function, line)) {
+            Map<String, Object> locals = new LinkedHashMap<>();
+            for (int slot = 0; slot < frame.function.getLocalCount(); slot++) {
+                locals.put(frame.function.getLocalName(slot), Value.toObject(frame.tags[slot], frame.payloads[slot], frame.refs[slot]));
+            }
+            listener.breakpointHit(function, line, locals, frame.context);
+        }
+    }
+
+    private void traceWrite(Frame frame, String variable, byte tag, long payload, Object ref) {
+        ScriptHooks hooks = this.hooks;
+        if (hooks != null) {
+            hooks.getListener().variableWritten(frame.function.getName(), variable, Value.toObject(tag, payload, ref), frame.context);
+        }
+    }
+
+    private void traceReturn(Frame frame) {
+        ScriptHooks hooks = this.hooks;
+        if (hooks != null && frame.tracedLine > 0) {
+            hooks.getListener().statementExited(frame.function.getName(), frame.tracedLine, frame.context);
+        }
+    }
+
+    /**
+     * The native functions take objects: the arguments are converted at the call.
+     */
+    private static List<Object> argumentsOf(Frame frame, int from, int argCount) {
+        Object[] args = new Object[argCount];
+        for (int i = 0; i < argCount; i++) {
+            args[i] = Value.toObject(frame.tags[from + i], frame.payloads[from + i], frame.refs[from + i]);
+        }
+        return Arrays.asList(args);
+    }
+
+    /**
+     * The dispatch loop. Script to script calls switch the current frame instead of recursing.
+     * The values stay unboxed (see Value), they are converted to objects only for the natives and the caller of the VM.
+     *
+     * @return the value returned by the entry function, EXITED, or a Continuation if a native suspended the script
+     */
+    private Object execute(Frame entry) {
+        ShadowStack shadow = entry.context.getShadowStack();
+        if (shadow == null) {
+            return this.dispatch(entry, null);
+        }
+
+        // The functions of a resumed script are back on the shadow stack, and all of them leave it however the call ends
+        int base = shadow.getDepth();
+        pushFrames(shadow, entry);
+        try {
+            return this.dispatch(entry, shadow);
+        } finally {
+            shadow.popTo(base);
+        }
+    }
+
+    private static void pushFrames(ShadowStack shadow, Frame frame) {
+        if (frame.caller != null) {
+            pushFrames(shadow, frame.caller);
+        }
+        shadow.push(frame.function.getName(), frame.function.lineAt(frame.code, frame.pc));
+    }
+
+    /**
+     * @param shadow where to keep the functions and lines running when a Sampler is attached, null otherwise
+     */
+    private Object dispatch(Frame entry, ShadowStack shadow) {
+        Frame frame = entry;
+        // The LINE instructions only for the Sampler
+        int[] code = (shadow == null) ? frame.function.getCode() : frame.function.getSampledCode();
+        CompiledScript script = frame.function.getScript();
+        Object[] constants = script.getConstants();
+        byte[] constantTags = script.getConstantTags();
+        long[] constantPayloads = script.getConstantPayloads();
+        byte[] tags = frame.tags;
+        long[] payloads = frame.payloads;
+        Object[] refs = frame.refs;
+        ScriptContext ctx = frame.context;
+        int pc = frame.function.pcIn(code, frame.code, frame.pc);
+        int sp = frame.sp;
+        boolean[] probes = (coverage == null) ? null : coverage.getProbes();
+
+        while (true) {
+            switch (code[pc++]) {
+                case OpCode.CONST: {
+                    int index = code[pc++];
+                    tags[sp] = constantTags[index];
+                    payloads[sp] = constantPayloads[index];
+                    refs[sp] = constants[index];
+                    sp++;
+                    break;
+                }
+                case OpCode.LOAD_LOCAL: {
+                    int slot = code[pc++];
+                    tags[sp] = tags[slot];
+                    payloads[sp] = payloads[slot];
+                    refs[sp] = refs[slot];
+                    sp++;
+                    break;
+                }
+                case OpCode.STORE_LOCAL: {
+                    int slot = code[pc++];
+                    sp--;
+                    tags[slot] = tags[sp];
+                    payloads[slot] = payloads[sp];
+                    refs[slot] = refs[sp];
+                    break;
+                }
+                case OpCode.LOAD_GLOBAL: {
+                    int slot = code[pc++];
+                    tags[sp] = ctx.getGlobalTag(slot);
+                    payloads[sp] = ctx.getGlobalPayload(slot);
+                    refs[sp] = ctx.getGlobalRef(slot);
+                    sp++;
+                    break;
+                }
+                case OpCode.STORE_GLOBAL:
+                    sp--;
+                    ctx.setGlobal(code[pc++], tags[sp], payloads[sp], refs[sp]);
+                    break;
+                case OpCode.TRACE_STORE_LOCAL: {
+                    int slot = code[pc++];
+                    sp--;
+                    tags[slot] = tags[sp];
+                    payloads[slot] = payloads[sp];
+                    refs[slot] = refs[sp];
+                    this.traceWrite(frame, frame.function.getLocalName(slot), tags[slot], payloads[slot], refs[slot]);
+                    break;
+                }
+                case OpCode.TRACE_STORE_GLOBAL: {
+                    int slot = code[pc++];
+                    sp--;
+                    ctx.setGlobal(slot, tags[sp], payloads[sp], refs[sp]);
+                    this.traceWrite(frame, ctx.getGlobalSymbols().nameOf(slot), tags[sp], payloads[sp], refs[sp]);
+                    break;
+                }
+                case OpCode.DECLARE_GLOBAL: {
+                    int slot = code[pc++];
+                    if (!ctx.isGlobalDefined(slot)) {
+                        ctx.setGlobal(slot, ValueType.NULL, 0, null);
+                    }
+                    break;
+                }
+                case OpCode.DECLARE_LOCAL: { // Top-level code only
+                    int slot = code[pc++];
+                    if (!ctx.isGlobalDefined(slot)) {
+                        ctx.setGlobal(slot, ValueType.INT, 0, null);
+                    }
+                    break;
+                }
+                case OpCode.CALL_FUNCTION: {
+                    int slot = code[pc++];
+                    int argCount = code[pc++];
+                    sp -= argCount;
+
+                    CompiledFunction callee = functionTable[slot];
+                    if (callee == null) {
+                        Object result = this.callUndefined(slot, argumentsOf(frame, sp, argCount), ctx, frame);
+                        if (result instanceof Suspension) {
+                            frame.pc = pc;
+                            frame.code = code;
+                            frame.sp = sp;
+                            return suspended(frame, result);
+                        }
+                        push(frame, sp, result);
+                        sp++;
+                        break;
+                    }
+
+                    Frame calleeFrame = new Frame(callee, ctx, frame);
+                    if (Profiling.isEnabled()) {
+                        calleeFrame.event = Profiling.begin(callee.getName(), false, calleeFrame.depth, argCount);
+                    }
+                    if (shadow != null) {
+                        shadow.push(callee.getName(), 0);
+                    }
+                    int paramCount = Math.min(callee.getParameters().size(), argCount);
+                    // The missing arguments stay null
+                    System.arraycopy(tags, sp, calleeFrame.tags, 0, paramCount);
+                    System.arraycopy(payloads, sp, calleeFrame.payloads, 0, paramCount);
+                    System.arraycopy(refs, sp, calleeFrame.refs, 0, paramCount);
+
+                    frame.pc = pc;
+                    frame.code = code;
+                    frame.sp = sp;
+                    frame = calleeFrame;
+                    code = (shadow == null) ? callee.getCode() : callee.getSampledCode();
+                    script = frame.function.getScript();
+                    constants = script.getConstants();
+                    constantTags = script.getConstantTags();
+                    constantPayloads = script.getConstantPayloads();
+                    tags = frame.tags;
+                    payloads = frame.payloads;
+                    refs = frame.refs;
+                    ctx = frame.context;
+                    pc = 0;
+                    sp = frame.sp;
+                    break;
+                }
+                case OpCode.CALL_NATIVE: {
+                    int handle = code[pc++];
+                    int argCount = code[pc++];
+                    sp -= argCount;
+                    Object result = this.invokeNative(handle, argumentsOf(frame, sp, argCount), ctx, frame);
+                    if (result instanceof Suspension) {
+                        // Only when started by start() or resume(), see ScriptContext.canSuspend()
+                        frame.pc = pc;
+                        frame.code = code;
+                        frame.sp = sp;
+                        return suspended(frame, result);
+                    }
+                    push(frame, sp, result);
+                    sp++;
+                    break;
+                }
+                case OpCode.POP:
+                    sp--;
+                    refs[sp] = null;
+                    break;
+                case OpCode.DUP:
+                    tags[sp] = tags[sp - 1];
+                    payloads[sp] = payloads[sp - 1];
+                    refs[sp] = refs[sp - 1];
+                    sp++;
+                    break;
+                case OpCode.EQ:
+                    sp--;
+                    pushBoolean(frame, sp - 1, Value.equals(tags[sp - 1], payloads[sp - 1], refs[sp - 1], tags[sp], payloads[sp], refs[sp]));
+                    break;
+                case OpCode.NE:
+                    sp--;
+                    pushBoolean(frame, sp - 1, !Value.equals(tags[sp - 1], payloads[sp - 1], refs[sp - 1], tags[sp], payloads[sp], refs[sp]));
+                    break;
+                case OpCode.GT:
+                    sp--;
+                    pushBoolean(frame, sp - 1, Value.greater(tags[sp - 1], payloads[sp - 1], refs[sp - 1], tags[sp], payloads[sp], refs[sp]));
+                    break;
+                case OpCode.LT:
+                    sp--;
+                    pushBoolean(frame, sp - 1, Value.less(tags[sp - 1], payloads[sp - 1], refs[sp - 1], tags[sp], payloads[sp], refs[sp]));
+                    break;
+                case OpCode.AND:
+                    sp--;
+                    pushBoolean(frame, sp - 1, Value.toBoolean(tags[sp - 1], payloads[sp - 1], refs[sp - 1]) && Value.toBoolean(tags[sp], payloads[sp], refs[sp]));
+                    break;
+                case OpCode.JUMP:
+                    pc = code[pc];
+                    break;
+                case OpCode.JUMP_IF_FALSE:
+                    sp--;
+                    if (Value.toBoolean(tags[sp], payloads[sp], refs[sp])) {
+                        pc++;
+                    } else {
+                        pc = code[pc];
+                    }
+                    break;
+                case OpCode.DEFINE: {
+                    CompiledFunction function = script.getFunction(code[pc++]);
+                    // Register so that future "callFunction(funcName,...)" and the linked call sites can find it
+                    functionTable[this.slotOf(function.getName())] = function;
+                    break;
+                }
+                case OpCode.EXIT:
+                    // Every frame of the call is dropped at once, the caller of the engine gets the exception
+                    return EXITED;
+                case OpCode.TRACE_RETURN:
+                case OpCode.RETURN: {
+                    if (code[pc - 1] == OpCode.TRACE_RETURN) {
+                        this.traceReturn(frame);
+                    }
+                    sp--;
+                    byte resultTag = tags[sp];
+                    long resultPayload = payloads[sp];
+                    Object resultRef = refs[sp];
+                    FunctionCallEvent event = frame.event;
+                    frame = frame.caller;
+                    if (event != null) {
+                        Profiling.end(event, (frame == null) ? null : frame.event);
+                    }
+                    if (shadow != null) {
+                        shadow.pop();
+                    }
+                    if (frame == null) {
+                        return Value.toObject(resultTag, resultPayload, resultRef);
+                    }
+                    code = (shadow == null) ? frame.function.getCode() : frame.function.getSampledCode();
+                    script = frame.function.getScript();
+                    constants = script.getConstants();
+                    constantTags = script.getConstantTags();
+                    constantPayloads = script.getConstantPayloads();
+                    tags = frame.tags;
+                    payloads = frame.payloads;
+                    refs = frame.refs;
+                    ctx = frame.context;
+                    pc = frame.pc;
+                    if (frame.code != code) {
+                        // Swapped while the function was calling, by attach() or detach()
+                        pc = frame.function.pcIn(code, frame.code, pc);
+                    }
+                    sp = frame.sp;
+                    tags[sp] = resultTag;
+                    payloads[sp] = resultPayload;
+                    refs[sp] = resultRef;
+                    sp++;
+                    break;
+                }
+                case OpCode.TRACE_LINE:
+                    this.traceLine(frame, code[pc]);
+                    if (shadow != null) {
+                        shadow.setLine(code[pc]);
+                    }
+                    pc++;
+                    break;
+                case OpCode.LINE:
+                    if (shadow != null) {
+                        shadow.setLine(code[pc]);
+                    }
+                    pc++;
+                    break;
+                case OpCode.PROBE:
+                    probes[code[pc++]] = true;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + code[pc - 1] + " in " + frame.function.getName());
+            }
+        }
+    }
+
+    /**
+     * The profiled calls in progress are not recorded: their times would include the wait.
+     */
+    private static Continuation suspended(Frame frame, Object reason) {
+        for (Frame f = frame; f != null; f = f.caller) {
+            f.event = null;
+        }
+        return new Continuation(frame, reason);
+    }
+
+    private static void push(Frame frame, int index, Object value) {
+        frame.tags[index] = Value.tagOf(value);
+        frame.payloads[index] = Value.payloadOf(value);
+        frame.refs[index] = value;
+    }
+
+    private static void pushBoolean(Frame frame, int index, boolean value) {
+        frame.tags[index] = ValueType.BOOLEAN;
+        frame.payloads[index] = value ? 1 : 0;
+        frame.refs[index] = null;
+    }
+}
@@ -0,0 +1,134 @@
+package com.titanicscriptinterpreter.project.engine.coverage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Which probes of a CoverageMap ran. Give it to an engine with setCoverage() before loading the scripts.
+ *
+ * The engines mark a probe with one plain store in the array of getProbes(), a boolean per probe rather than a bit:
+ * setting a bit is a read-modify-write that loses the bits set meanwhile by the sessions sharing the array on other threads,
+ * where storing true twice is harmless. The files pack the probes in bits.
+ *
+ * The file holds its map, so that the runs of the same scripts can be merged and reported without the scripts:
+ * magic, format version, the script count and names, the probe count and for each probe its script, function, line,
+ * branch (-1 for a line) and label (empty for a line), then the probes, 64 per long. Big-endian, see DataOutputStream.
+ */
+public final class CoverageData {
+
+    private static final int MAGIC = 0x54534356; // "TSCV"
+    private static final int VERSION = 1;
+
+    private final CoverageMap map;
+    private final boolean[] probes;
+
+    public CoverageData(CoverageMap map) {
+        this.map = map;
+        this.probes = new boolean[map.getProbeCount()];
+    }
+
+    public CoverageMap getMap() {
+        return map;
+    }
+
+    /**
+     * For the engines, indexed like the probes of the map.
+     */
+    public boolean[] getProbes() {
+        return probes;
+    }
+
+    public boolean isCovered(int probe) {
+        return probes[probe];
+    }
+
+    /**
+     * Add the probes that ran in another run of the same scripts, for instance a parallel one.
+     *
+     * @throws CoverageException if the other run was on other scripts
+     */
+    public void merge(CoverageData other) {
+        if (!map.hasSameProbes(other.map)) {
+            throw new CoverageException("Cannot merge the coverage of other scripts");
+        }
+        for (int i = 0; i < probes.length; i++) {
+            if (other.probes[i]) {
+                probes[i] = true;
+            }
+        }
+    }
+
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(map.getScriptCount());
+            for (int script = 0; script < map.getScriptCount(); script++) {
+                out.writeUTF(map.getScriptName(script));
+            }
+            out.writeInt(probes.length);
+            for (int probe = 0; probe < probes.length; probe++) {
+                out.writeInt(map.getProbeScript(probe));
+                out.writeUTF(map.getProbeFunction(probe));
+                out.writeInt(map.getProbeLine(probe));
+                out.writeInt(map.getProbeBranch(probe));
+                String label = map.getProbeLabel(probe);
+                out.writeUTF(label == null ? "" : label);
+            }
+            for (int i = 0; i < probes.length; i += 64) {
+                long bits = 0;
+                for (int bit = 0; bit < 64 && i + bit < probes.length; bit++) {
+                    if (probes[i + bit]) {
+                        bits |= 1L << bit;
+                    }
+                }
+                out.writeLong(bits);
+            }
+        }
+    }
+
+    /**
+     * @throws CoverageException if the file is not a coverage file of this version, or is truncated
+     */
+    public static CoverageData read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new CoverageException(path + " is not a coverage file of this version");
+            }
+            CoverageMap map = new CoverageMap();
+            int scriptCount = in.readInt();
+            for (int script = 0; script < scriptCount; script++) {
+                map.addScriptName(in.readUTF());
+            }
+            int probeCount = in.readInt();
+            for (int probe = 0; probe < probeCount; probe++) {
+                int script = in.readInt();
+                String function = in.readUTF();
+                int line = in.readInt();
+                int branch = in.readInt();
+                String label = in.readUTF();
+                map.addProbe(script, function, line, branch, label.isEmpty() ? null : label);
+            }
+            if (map.getProbeCount() != probeCount) {
+                throw new CoverageException(path + " is corrupted: the same probe is there twice");
+            }
+
+            CoverageData data = new CoverageData(map);
+            for (int i = 0; i < probeCount; i += 64) {
+                long bits = in.readLong();
+                for (int bit = 0; bit < 64 && i + bit < probeCount; bit++) {
+                    data.probes[i + bit] = (bits & (1L << bit)) != 0;
+                }
+            }
+            return data;
+        } catch (EOFException e) {
+            throw new CoverageException(path + " is truncated");
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.titanicscriptinterpreter.project.engine.coverage;
+
+/**
+ * Thrown when a coverage file is corrupted, of another format version, or cannot be merged with another one
+ * because it was recorded on other scripts.
+ */
+public class CoverageException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public CoverageException(String message) {
+        super(message);
+    }
+}
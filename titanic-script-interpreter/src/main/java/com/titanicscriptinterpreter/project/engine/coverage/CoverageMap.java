@@ -0,0 +1,190 @@
+package com.titanicscriptinterpreter.project.engine.coverage;
+
+import com.titanicscriptinterpreter.project.engine.lexer.CaseBlock;
+import com.titanicscriptinterpreter.project.engine.lexer.ConstantFolder;
+import com.titanicscriptinterpreter.project.engine.statements.FunctionDeclarationStatement;
+import com.titanicscriptinterpreter.project.engine.statements.IfStatement;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import com.titanicscriptinterpreter.project.engine.statements.SwitchStatement;
+import com.titanicscriptinterpreter.project.engine.statements.WhileStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The probes of a set of scripts: one per line of a function holding a statement, and one per branch of each
+ * 'if' (then, else) and 'switch' (each case, then "no case" when none matched). The engines mark them in a CoverageData.
+ *
+ * A probe is found by the name of its function and its line, so the engines do not need to know which script a
+ * statement comes from: the function names are unique in a bundle. Like for the Sampler, the top-level code is left out.
+ * The statements are folded first like the engines do (see ConstantFolder), an 'if' on literals is not a branch.
+ *
+ * Add all the scripts before giving it to an engine.
+ */
+public final class CoverageMap {
+
+    private static final class Probe {
+        final int script;
+        final String function;
+        final int line;
+        final int branch; // -1 for a line
+        final String label;
+
+        Probe(int script, String function, int line, int branch, String label) {
+            this.script = script;
+            this.function = function;
+            this.line = line;
+            this.branch = branch;
+            this.label = label;
+        }
+
+        String key() {
+            return (branch < 0) ? lineKey(function, line) : branchKey(function, line, branch);
+        }
+    }
+
+    private final List<String> scripts = new ArrayList<>();
+    private final List<Probe> probes = new ArrayList<>();
+    private final Map<String, Integer> probeIndexes = new HashMap<>();
+
+    /**
+     * @param name where the script comes from, its path for the HTML report to show the source
+     */
+    public void addScript(String name, List<Statement> statements) {
+        scripts.add(name);
+        this.addStatements(scripts.size() - 1, null, ConstantFolder.fold(statements));
+    }
+
+    private void addStatements(int script, String function, List<Statement> statements) {
+        for (Statement stmt : statements) {
+            if (function != null && stmt.getLine() > 0) {
+                this.addProbe(new Probe(script, function, stmt.getLine(), -1, null));
+            }
+
+            if (stmt instanceof FunctionDeclarationStatement funcDecl) {
+                this.addStatements(script, funcDecl.getFunctionName(), funcDecl.getBody());
+            } else if (stmt instanceof IfStatement ifStatement) {
+                this.addBranch(script, function, stmt, 0, "then");
+                this.addBranch(script, function, stmt, 1, "else");
+                this.addStatements(script, function, ifStatement.getThenStatements());
+                this.addStatements(script, function, ifStatement.getElseStatements());
+            } else if (stmt instanceof WhileStatement whileStatement) {
+                this.addStatements(script, function, whileStatement.getBody());
+            } else if (stmt instanceof SwitchStatement switchStatement) {
+                List<CaseBlock> cases = switchStatement.getCases();
+                for (int i = 0; i < cases.size(); i++) {
+                    this.addBranch(script, function, stmt, i, "case " + (i + 1));
+                }
+                this.addBranch(script, function, stmt, cases.size(), "no case");
+                for (CaseBlock cb : cases) {
+                    this.addStatements(script, function, cb.getStatements());
+                }
+            }
+        }
+    }
+
+    private void addBranch(int script, String function, Statement stmt, int branch, String label) {
+        if (function != null && stmt.getLine() > 0) {
+            this.addProbe(new Probe(script, function, stmt.getLine(), branch, label));
+        }
+    }
+
+    private void addProbe(Probe probe) {
+        // Two statements on the same line share its probe
+        if (!probeIndexes.containsKey(probe.key())) {
+            probeIndexes.put(probe.key(), probes.size());
+            probes.add(probe);
+        }
+    }
+
+    private static String lineKey(String function, int line) {
+        return function + ':' + line;
+    }
+
+    private static String branchKey(String function, int line, int branch) {
+        return function + ':' + line + '#' + branch;
+    }
+
+    /**
+     * @return the probe of the statements of the function at this line, -1 if none
+     */
+    public int lineProbeOf(String function, int line) {
+        return probeIndexes.getOrDefault(lineKey(function, line), -1);
+    }
+
+    /**
+     * @param branch 0 for then and 1 for else, or the index of the case, the case count for "no case"
+     * @return the probe of the branch of the 'if' or 'switch' of the function at this line, -1 if none
+     */
+    public int branchProbeOf(String function, int line, int branch) {
+        return probeIndexes.getOrDefault(branchKey(function, line, branch), -1);
+    }
+
+    public int getScriptCount() {
+        return scripts.size();
+    }
+
+    public String getScriptName(int script) {
+        return scripts.get(script);
+    }
+
+    public int getProbeCount() {
+        return probes.size();
+    }
+
+    public int getProbeScript(int probe) {
+        return probes.get(probe).script;
+    }
+
+    public String getProbeFunction(int probe) {
+        return probes.get(probe).function;
+    }
+
+    public int getProbeLine(int probe) {
+        return probes.get(probe).line;
+    }
+
+    /**
+     * @return the index of the branch, see branchProbeOf(), or -1 for the probe of a line
+     */
+    public int getProbeBranch(int probe) {
+        return probes.get(probe).branch;
+    }
+
+    /**
+     * @return "then", "else", "case 2", "no case", or null for the probe of a line
+     */
+    public String getProbeLabel(int probe) {
+        return probes.get(probe).label;
+    }
+
+    /**
+     * True if the other map was made from the same scripts, so that their coverage can be merged.
+     */
+    public boolean hasSameProbes(CoverageMap other) {
+        if (!scripts.equals(other.scripts) || probes.size() != other.probes.size()) {
+            return false;
+        }
+        for (int i = 0; i < probes.size(); i++) {
+            Probe probe = probes.get(i);
+            Probe otherProbe = other.probes.get(i);
+            if (probe.script != otherProbe.script || probe.line != otherProbe.line || probe.branch != otherProbe.branch
+                    || !probe.function.equals(otherProbe.function)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * For CoverageData.read(): the scripts, then the probes in index order.
+     */
+    void addScriptName(String name) {
+        scripts.add(name);
+    }
+
+    void addProbe(int script, String function, int line, int branch, String label) {
+        this.addProbe(new Probe(script, function, line, branch, label));
+    }
+}
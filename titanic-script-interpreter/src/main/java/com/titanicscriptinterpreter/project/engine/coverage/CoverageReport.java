@@ -0,0 +1,282 @@
+package com.titanicscriptinterpreter.project.engine.coverage;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Merges the coverage files of runs of the same scripts, prints the lines and branches covered by script, and the ones
+ * never run, and can write them as an HTML page showing the source of the scripts:
+ *
+ * java -cp titanic-script-interpreter-1.0-SNAPSHOT.jar com.titanicscriptinterpreter.project.engine.coverage.CoverageReport run1.cov run2.cov [--html coverage.html] [--merged all.cov]
+ */
+public class CoverageReport {
+
+    // The probes of one line of a script
+    private static final class LineProbes {
+        final List<Integer> probes = new ArrayList<>();
+        boolean hasLine;
+        boolean lineCovered;
+        int branches;
+        int branchesCovered;
+    }
+
+    private final CoverageData data;
+    // By script, then by line
+    private final List<Map<Integer, LineProbes>> lines = new ArrayList<>();
+
+    public CoverageReport(CoverageData data) {
+        this.data = data;
+        CoverageMap map = data.getMap();
+        for (int script = 0; script < map.getScriptCount(); script++) {
+            lines.add(new TreeMap<>());
+        }
+        for (int probe = 0; probe < map.getProbeCount(); probe++) {
+            LineProbes line = lines.get(map.getProbeScript(probe)).computeIfAbsent(map.getProbeLine(probe), key -> new LineProbes());
+            line.probes.add(probe);
+            if (map.getProbeBranch(probe) < 0) {
+                line.hasLine = true;
+                line.lineCovered = data.isCovered(probe);
+            } else {
+                line.branches++;
+                if (data.isCovered(probe)) {
+                    line.branchesCovered++;
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        Path htmlPath = null;
+        Path mergedPath = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--html") && i + 1 < args.length) {
+                htmlPath = Path.of(args[++i]);
+            } else if (args[i].equals("--merged") && i + 1 < args.length) {
+                mergedPath = Path.of(args[++i]);
+            } else {
+                inputs.add(Path.of(args[i]));
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: CoverageReport <coverage.cov>... [--html coverage.html] [--merged all.cov]");
+            System.exit(1);
+        }
+
+        CoverageData merged;
+        try {
+            merged = CoverageData.read(inputs.get(0));
+            for (Path input : inputs.subList(1, inputs.size())) {
+                merged.merge(CoverageData.read(input));
+            }
+        } catch (CoverageException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        CoverageReport report = new CoverageReport(merged);
+        PrintWriter out = new PrintWriter(System.out, true);
+        report.writeText(out);
+        out.flush();
+        if (htmlPath != null) {
+            try (Writer writer = Files.newBufferedWriter(htmlPath, StandardCharsets.UTF_8)) {
+                report.writeHtml(writer);
+            }
+            System.out.println("HTML report written to " + htmlPath);
+        }
+        if (mergedPath != null) {
+            merged.write(mergedPath);
+            System.out.println("Merged coverage written to " + mergedPath);
+        }
+    }
+
+    /**
+     * A summary line per script, then its lines never run and its branches never taken.
+     */
+    public void writeText(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        CoverageMap map = data.getMap();
+        int allLines = 0;
+        int allLinesCovered = 0;
+        int allBranches = 0;
+        int allBranchesCovered = 0;
+        for (int script = 0; script < map.getScriptCount(); script++) {
+            int[] counts = this.countsOf(script);
+            allLines += counts[0];
+            allLinesCovered += counts[1];
+            allBranches += counts[2];
+            allBranchesCovered += counts[3];
+            out.printf("%s: lines %s, branches %s%n", map.getScriptName(script),
+                    ratio(counts[1], counts[0]), ratio(counts[3], counts[2]));
+
+            List<Integer> missedLines = new ArrayList<>();
+            List<String> missedBranches = new ArrayList<>();
+            for (Map.Entry<Integer, LineProbes> entry : lines.get(script).entrySet()) {
+                LineProbes line = entry.getValue();
+                if (line.hasLine && !line.lineCovered) {
+                    missedLines.add(entry.getKey());
+                }
+                for (int probe : line.probes) {
+                    if (map.getProbeBranch(probe) >= 0 && !data.isCovered(probe)) {
+                        missedBranches.add(entry.getKey() + " " + map.getProbeLabel(probe));
+                    }
+                }
+            }
+            if (!missedLines.isEmpty()) {
+                out.println("  lines never run: " + ranges(missedLines));
+            }
+            if (!missedBranches.isEmpty()) {
+                out.println("  branches never taken: " + String.join(", ", missedBranches));
+            }
+        }
+        out.printf("total: lines %s, branches %s%n", ratio(allLinesCovered, allLines), ratio(allBranchesCovered, allBranches));
+        out.flush();
+    }
+
+    /**
+     * The source of each script, its lines colored: green if run and all their branches taken, yellow if some branch was not,
+     * red if never run. The scripts are read from the paths they were loaded from, without them only the lines with
+     * probes are listed.
+     */
+    public void writeHtml(Writer writer) throws IOException {
+        PrintWriter out = new PrintWriter(writer);
+        CoverageMap map = data.getMap();
+        out.println("<!DOCTYPE html>");
+        out.println("<html><head><meta charset=\"UTF-8\"><title>Script coverage</title><style>");
+        out.println("body { font-family: sans-serif; } pre { margin: 0; } td { padding: 0 6px; vertical-align: top; }");
+        out.println(".covered { background: #dfd; } .partial { background: #ffc; } .missed { background: #fdd; }");
+        out.println(".line { color: #888; text-align: right; } .branches { color: #555; font-size: smaller; }");
+        out.println("</style></head><body>");
+        out.println("<h1>Script coverage</h1>");
+
+        out.println("<table><tr><th>script</th><th>lines</th><th>branches</th></tr>");
+        for (int script = 0; script < map.getScriptCount(); script++) {
+            int[] counts = this.countsOf(script);
+            out.printf("<tr><td><a href=\"#script%d\">%s</a></td><td>%s</td><td>%s</td></tr>%n", script,
+                    escape(map.getScriptName(script)), ratio(counts[1], counts[0]), ratio(counts[3], counts[2]));
+        }
+        out.println("</table>");
+
+        for (int script = 0; script < map.getScriptCount(); script++) {
+            String name = map.getScriptName(script);
+            out.printf("<h2 id=\"script%d\">%s</h2>%n", script, escape(name));
+            Map<Integer, LineProbes> scriptLines = lines.get(script);
+            List<String> source = readSource(name);
+            int lastLine = source.size();
+            for (int line : scriptLines.keySet()) {
+                lastLine = Math.max(lastLine, line);
+            }
+
+            out.println("<table>");
+            for (int number = 1; number <= lastLine; number++) {
+                LineProbes line = scriptLines.get(number);
+                if (line == null && source.isEmpty()) {
+                    continue;
+                }
+                String text = (number <= source.size()) ? source.get(number - 1) : "";
+                out.printf("<tr class=\"%s\"><td class=\"line\">%d</td><td><pre>%s</pre></td><td class=\"branches\">%s</td></tr>%n",
+                        cssClassOf(line), number, escape(text), escape(this.branchesOf(line)));
+            }
+            out.println("</table>");
+        }
+        out.println("</body></html>");
+        out.flush();
+    }
+
+    /**
+     * @return the lines with a probe, the ones covered, the branches, the ones taken
+     */
+    private int[] countsOf(int script) {
+        int[] counts = new int[4];
+        for (LineProbes line : lines.get(script).values()) {
+            if (line.hasLine) {
+                counts[0]++;
+                if (line.lineCovered) {
+                    counts[1]++;
+                }
+            }
+            counts[2] += line.branches;
+            counts[3] += line.branchesCovered;
+        }
+        return counts;
+    }
+
+    private String branchesOf(LineProbes line) {
+        if (line == null || line.branches == 0) {
+            return "";
+        }
+        CoverageMap map = data.getMap();
+        List<String> branches = new ArrayList<>();
+        for (int probe : line.probes) {
+            if (map.getProbeBranch(probe) >= 0) {
+                branches.add(map.getProbeLabel(probe) + (data.isCovered(probe) ? " taken" : " never taken"));
+            }
+        }
+        return String.join(", ", branches);
+    }
+
+    private static String cssClassOf(LineProbes line) {
+        if (line == null) {
+            return "";
+        }
+        boolean run = line.hasLine ? line.lineCovered : line.branchesCovered > 0;
+        if (!run) {
+            return "missed";
+        }
+        return (line.branchesCovered < line.branches) ? "partial" : "covered";
+    }
+
+    private static List<String> readSource(String name) {
+        try {
+            Path path = Path.of(name);
+            if (Files.isRegularFile(path)) {
+                return Files.readAllLines(path, StandardCharsets.UTF_8);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Cannot read the source of " + name + ": " + e);
+        }
+        return Collections.emptyList();
+    }
+
+    private static String ratio(int covered, int total) {
+        return String.format("%d/%d (%.1f%%)", covered, total, (total == 0) ? 100.0 : 100.0 * covered / total);
+    }
+
+    /**
+     * "3, 7-9, 12"
+     */
+    private static String ranges(List<Integer> numbers) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < numbers.size()) {
+            int first = numbers.get(i);
+            int last = first;
+            while (i + 1 < numbers.size() && numbers.get(i + 1) == last + 1) {
+                last = numbers.get(++i);
+            }
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(first);
+            if (last != first) {
+                sb.append('-').append(last);
+            }
+            i++;
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
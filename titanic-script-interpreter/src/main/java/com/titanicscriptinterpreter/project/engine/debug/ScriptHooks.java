@@ -0,0 +1,71 @@
+package com.titanicscriptinterpreter.project.engine.debug;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.NativeFunction;
+import com.titanicscriptinterpreter.project.engine.interpreter.NativeRegistry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A ScriptListener and its line breakpoints, to attach to an engine with attach(), and detach() to stop.
+ *
+ * Nothing checks for hooks when none is attached: attaching swaps instrumented code in, and detaching swaps the original
+ * back, so the scripts then run exactly the code they run without hooks. In the VM the functions get a copy of their
+ * bytecode with a TRACE_LINE at the start of each statement and tracing instructions in place of the stores, in the
+ * Interpreter their statements are wrapped, and the natives of the registry are wrapped too.
+ *
+ * Attaching and detaching can be done while the scripts run, from any thread: a running script switches at its next
+ * call or return. Breakpoints can be added and removed at any time.
+ */
+public final class ScriptHooks {
+
+    private final ScriptListener listener;
+    private final Set<String> breakpoints = ConcurrentHashMap.newKeySet();
+
+    public ScriptHooks(ScriptListener listener) {
+        this.listener = listener;
+    }
+
+    public ScriptListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @param line of the script, where a statement of the function starts
+     */
+    public void addBreakpoint(String function, int line) {
+        breakpoints.add(function + ':' + line);
+    }
+
+    public void removeBreakpoint(String function, int line) {
+        breakpoints.remove(function + ':' + line);
+    }
+
+    public boolean isBreakpoint(String function, int line) {
+        return !breakpoints.isEmpty() && breakpoints.contains(function + ':' + line);
+    }
+
+    /**
+     * For the engines: replace each native of the registry by a wrapper telling the listener of its calls.
+     * The natives registered afterwards are not wrapped.
+     */
+    public void wrapNatives(NativeRegistry natives) {
+        for (int handle = 0; handle < natives.size(); handle++) {
+            NativeFunction function = natives.functionOf(handle);
+            if (!(function instanceof TracedNative)) {
+                String name = natives.nameOf(handle);
+                natives.register(name, natives.arityOf(handle), new TracedNative(name, function, listener));
+            }
+        }
+    }
+
+    /**
+     * For the engines: put back the natives wrapped by wrapNatives().
+     */
+    public void unwrapNatives(NativeRegistry natives) {
+        for (int handle = 0; handle < natives.size(); handle++) {
+            if (natives.functionOf(handle) instanceof TracedNative traced && traced.getListener() == listener) {
+                natives.register(natives.nameOf(handle), natives.arityOf(handle), traced.getOriginal());
+            }
+        }
+    }
+}
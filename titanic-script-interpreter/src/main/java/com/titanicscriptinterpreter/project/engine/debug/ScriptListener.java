@@ -0,0 +1,52 @@
+package com.titanicscriptinterpreter.project.engine.debug;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Told of what the scripts do while attached to an engine in a ScriptHooks, see attach() on the engines.
+ * Called on the thread running the script: the script waits until it returns, which is what a breakpoint needs.
+ * Implement only the methods needed.
+ *
+ * The statements are the ones of the script functions, the top-level code is not traced. The context is the one the
+ * statement runs in: for the VM the root context of the session, for the Interpreter the scope of the function.
+ */
+public interface ScriptListener {
+
+    /**
+     * A 'while' is entered again at each check of its condition, the last one included, in both engines.
+     */
+    default void statementEntered(String function, int line, ScriptContext ctx) {
+    }
+
+    /**
+     * Not called when 'exitcode' or a suspension leaves the statement.
+     * In the VM the statements are not nested: a statement holding a block ('if', 'while', 'switch') is exited when
+     * the first statement of its block is entered. The Interpreter exits it after its block.
+     */
+    default void statementExited(String function, int line, ScriptContext ctx) {
+    }
+
+    /**
+     * Right after the write of a variable, local or global, by an assignment.
+     *
+     * @param function "&lt;main&gt;" for the top-level code in the VM
+     */
+    default void variableWritten(String function, String variable, Object value, ScriptContext ctx) {
+    }
+
+    /**
+     * Right after a native returned, its result can be a Suspension.
+     */
+    default void nativeCalled(String name, List<Object> argValues, Object result, ScriptContext ctx) {
+    }
+
+    /**
+     * Before the statement at a breakpoint runs, right after statementEntered().
+     *
+     * @param locals the parameters and local variables of the function, by name
+     */
+    default void breakpointHit(String function, int line, Map<String, Object> locals, ScriptContext ctx) {
+    }
+}
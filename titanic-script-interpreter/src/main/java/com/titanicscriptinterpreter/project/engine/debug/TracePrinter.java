@@ -0,0 +1,77 @@
+package com.titanicscriptinterpreter.project.engine.debug;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.EmptyFunctionResult;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prints what the scripts do, one line per statement entered, variable written and native called:
+ *
+ * greet:3
+ *   x = "penny"
+ *   message("hello") -> null
+ *
+ * The statements exited are left out, the next statement entered tells it. The breakpoints hit print their locals.
+ */
+public class TracePrinter implements ScriptListener {
+
+    private final PrintStream out;
+    private final boolean printTrace; // false: only the breakpoints are printed
+
+    public TracePrinter(PrintStream out) {
+        this(out, true);
+    }
+
+    public TracePrinter(PrintStream out, boolean printTrace) {
+        this.out = out;
+        this.printTrace = printTrace;
+    }
+
+    @Override
+    public void statementEntered(String function, int line, ScriptContext ctx) {
+        if (printTrace) {
+            out.println(function + ":" + line);
+        }
+    }
+
+    @Override
+    public void variableWritten(String function, String variable, Object value, ScriptContext ctx) {
+        if (printTrace) {
+            out.println("  " + variable + " = " + format(value));
+        }
+    }
+
+    @Override
+    public void nativeCalled(String name, List<Object> argValues, Object result, ScriptContext ctx) {
+        if (!printTrace) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder("  ").append(name).append('(');
+        for (int i = 0; i < argValues.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(format(argValues.get(i)));
+        }
+        sb.append(')');
+        if (!(result instanceof EmptyFunctionResult)) {
+            // A native returning nothing
+            sb.append(" -> ").append(format(result));
+        }
+        out.println(sb);
+    }
+
+    @Override
+    public void breakpointHit(String function, int line, Map<String, Object> locals, ScriptContext ctx) {
+        out.println("Breakpoint at " + function + ":" + line);
+        for (Map.Entry<String, Object> local : locals.entrySet()) {
+            out.println("  " + local.getKey() + " = " + format(local.getValue()));
+        }
+    }
+
+    private static String format(Object value) {
+        return (value instanceof String) ? "\"" + value + "\"" : String.valueOf(value);
+    }
+}
@@ -0,0 +1,36 @@
+package com.titanicscriptinterpreter.project.engine.debug;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.NativeFunction;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import java.util.List;
+
+/**
+ * A native swapped in the NativeRegistry while a ScriptHooks is attached, see ScriptHooks.wrapNatives().
+ */
+final class TracedNative implements NativeFunction {
+
+    private final String name;
+    private final NativeFunction original;
+    private final ScriptListener listener;
+
+    TracedNative(String name, NativeFunction original, ScriptListener listener) {
+        this.name = name;
+        this.original = original;
+        this.listener = listener;
+    }
+
+    NativeFunction getOriginal() {
+        return original;
+    }
+
+    ScriptListener getListener() {
+        return listener;
+    }
+
+    @Override
+    public Object call(List<Object> argValues, ScriptContext ctx) {
+        Object result = original.call(argValues, ctx);
+        listener.nativeCalled(name, argValues, result, ctx);
+        return result;
+    }
+}
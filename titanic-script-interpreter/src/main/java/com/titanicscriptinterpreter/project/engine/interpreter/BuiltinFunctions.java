@@ -0,0 +1,98 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+import java.util.List;
+
+/**
+ * The functions that are not declared in the script but provided by the game engine.
+ */
+public class BuiltinFunctions {
+
+    private BuiltinFunctions() {
+    }
+
+    /**
+     * A registry with all the builtins. They talk to the player through the ScriptIO of the root context.
+     */
+    public static NativeRegistry createRegistry() {
+        NativeRegistry registry = new NativeRegistry();
+        registerAll(registry);
+        return registry;
+    }
+
+    public static void registerAll(NativeRegistry registry) {
+        registry.register("puppetspeak", 1, BuiltinFunctions::puppetspeak);
+        registry.register("message", 1, BuiltinFunctions::message);
+        registry.register("puppetclear", 0, BuiltinFunctions::puppetclear);
+        registry.register("puppetbevel", 2, BuiltinFunctions::puppetbevel);
+        registry.register("puppetevent", 0, BuiltinFunctions::puppetevent);
+        registry.register("spotmovie", 1, BuiltinFunctions::spotmovie);
+        registry.register("opentrackfile", 1, BuiltinFunctions::opentrackfile);
+        registry.register("closetrackfile", 1, BuiltinFunctions::closetrackfile);
+        registry.register("delay", 1, BuiltinFunctions::delay);
+        registry.register("advancephase", 0, BuiltinFunctions::advancephase);
+    }
+
+    private static Object puppetspeak(List<Object> argValues, ScriptContext ctx) {
+        ctx.getRootContext().getIO().output("Play dialog sound: '" + argValues.get(0) + "'.");
+        return EmptyFunctionResult.INSTANCE;
+    }
+
+    private static Object message(List<Object> argValues, ScriptContext ctx) {
+        ctx.getRootContext().getIO().output("Level designer comment: '" + argValues.get(0) + "'.");
+        return EmptyFunctionResult.INSTANCE;
+    }
+
+    private static Object puppetclear(List<Object> argValues, ScriptContext ctx) {
+        ctx.getRootContext().getIO().output("Hide answers to the character you are talking to.");
+        return EmptyFunctionResult.INSTANCE;
+    }
+
+    private static Object puppetbevel(List<Object> argValues, ScriptContext ctx) {
+        ctx.getRootContext().getIO().output("Add answer option (id " + argValues.get(1) + "): " + argValues.get(0) + "'.");
+        return EmptyFunctionResult.INSTANCE;
+    }
+
+    private static Object puppetevent(List<Object> argValues, ScriptContext ctx) {
+        ScriptIO io = ctx.getRootContext().getIO();
+        io.output("Enter the answer id: ");
+        if (ctx.canSuspend()) {
+            // The answer is given to VirtualMachine.resume()
+            return Suspension.AWAITING_ANSWER;
+        }
+        int answerId = Integer.parseInt(io.readLine());
+        io.output("");
+
+        return answerId;
+    }
+
+    private static Object spotmovie(List<Object> argValues, ScriptContext ctx) {
+        ctx.getRootContext().getIO().output("Launch video: '" + argValues.get(0) + "'.");
+        return EmptyFunctionResult.INSTANCE;
+    }
+
+    private static Object opentrackfile(List<Object> argValues, ScriptContext ctx) {
+        ctx.getRootContext().getIO().output("Start playing track: '" + argValues.get(0) + "'.");
+        return EmptyFunctionResult.INSTANCE;
+    }
+
+    private static Object closetrackfile(List<Object> argValues, ScriptContext ctx) {
+        ctx.getRootContext().getIO().output("Stop playing track: '" + argValues.get(0) + "'.");
+        return EmptyFunctionResult.INSTANCE;
+    }
+
+    private static Object delay(List<Object> argValues, ScriptContext ctx) {
+        ctx.getRootContext().getIO().output("Adding a delay of: '" + argValues.get(0) + "'.");
+        if (ctx.canSuspend() && argValues.get(0) instanceof Number ticks) {
+            // The Scheduler of the session resumes the script when the delay is over
+            return Suspension.delay(ticks.longValue());
+        }
+        return EmptyFunctionResult.INSTANCE;
+    }
+
+    private static Object advancephase(List<Object> argValues, ScriptContext ctx) {
+        int currentPhase = (int) ctx.getRootContext().getVariable("phase");
+        currentPhase++;
+        ctx.getRootContext().setVariable("phase", currentPhase);
+        return EmptyFunctionResult.INSTANCE;
+    }
+}
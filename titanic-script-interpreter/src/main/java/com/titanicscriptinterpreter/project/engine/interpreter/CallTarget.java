@@ -0,0 +1,42 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+import com.titanicscriptinterpreter.project.engine.statements.FunctionDeclarationStatement;
+
+/**
+ * What a call site calls, set on the call nodes by the link phase of the Interpreter. There is one per function name,
+ * shared by all the call sites: when a script is reloaded the new declaration replaces the function here,
+ * and every call site sees it without being linked again.
+ */
+public class CallTarget {
+
+    private final String functionName;
+    private FunctionDeclarationStatement function; // null until the declaration has been interpreted
+    private int nativeHandle = -1;
+
+    public CallTarget(String functionName) {
+        this.functionName = functionName;
+    }
+
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    public FunctionDeclarationStatement getFunction() {
+        return function;
+    }
+
+    public void setFunction(FunctionDeclarationStatement function) {
+        this.function = function;
+    }
+
+    /**
+     * @return the handle of the native with the same name, or -1. Used when there is no script function.
+     */
+    public int getNativeHandle() {
+        return nativeHandle;
+    }
+
+    public void setNativeHandle(int nativeHandle) {
+        this.nativeHandle = nativeHandle;
+    }
+}
@@ -0,0 +1,14 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+/**
+ * How the execution of statements ended, returned by the Interpreter instead of throwing to unwind.
+ */
+public final class Completion {
+
+    public static final int NORMAL = 0;
+    public static final int RETURN = 1; // A 'return' statement, the value is kept by the Interpreter until the call returns it
+    public static final int EXIT = 2;   // An 'exitcode' statement, it ends every function up to the caller of the engine
+
+    private Completion() {
+    }
+}
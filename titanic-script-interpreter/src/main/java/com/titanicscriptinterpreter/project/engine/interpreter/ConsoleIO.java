@@ -0,0 +1,41 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+import com.titanicscriptinterpreter.project.engine.Cli;
+import java.util.Scanner;
+
+/**
+ * The terminal: messages to the standard output, answers from the standard input.
+ */
+public class ConsoleIO implements ScriptIO {
+
+    private static ConsoleIO standard;
+
+    private final Scanner scanner;
+
+    /**
+     * Use the scanner of the caller if it already reads System.in: two scanners on the same stream steal input from each other.
+     */
+    public ConsoleIO(Scanner scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * The one used by the contexts that were not given any, created on first use.
+     */
+    public static synchronized ConsoleIO standard() {
+        if (standard == null) {
+            standard = new ConsoleIO(new Scanner(System.in));
+        }
+        return standard;
+    }
+
+    @Override
+    public void output(String message) {
+        Cli.outputMessage(message);
+    }
+
+    @Override
+    public String readLine() {
+        return scanner.nextLine();
+    }
+}
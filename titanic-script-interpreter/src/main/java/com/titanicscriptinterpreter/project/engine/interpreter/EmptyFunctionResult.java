@@ -1,5 +1,12 @@
 package com.titanicscriptinterpreter.project.engine.interpreter;
 
-public class EmptyFunctionResult {
-    
+/**
+ * The result of the natives that return nothing. There is a single instance, returned by every call.
+ */
+public final class EmptyFunctionResult {
+
+    public static final EmptyFunctionResult INSTANCE = new EmptyFunctionResult();
+
+    private EmptyFunctionResult() {
+    }
 }
@@ -1,7 +1,11 @@
 package com.titanicscriptinterpreter.project.engine.interpreter;
 
+/**
+ * Thrown to the caller of the engine (load or callFunction) when the script ran 'exitcode'.
+ * The engines do not use it to unwind the script calls, so it has no stack trace to fill.
+ */
 public class ExitScriptException extends RuntimeException {
     public ExitScriptException() {
-        super("Script execution was terminated by 'exitcode'");
+        super("Script execution was terminated by 'exitcode'", null, false, false);
     }
 }
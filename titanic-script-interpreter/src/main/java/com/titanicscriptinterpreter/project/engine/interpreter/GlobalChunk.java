@@ -0,0 +1,37 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+/**
+ * A run of global slots of a root context, unboxed (see Value). After a fork (ScriptContext.copyGlobals()),
+ * the chunks are shared by both contexts: only the context owning a chunk changes it, the other ones copy it first.
+ */
+final class GlobalChunk {
+
+    static final int BITS = 5;
+    static final int SIZE = 1 << BITS;
+    static final int MASK = SIZE - 1;
+
+    // Owned by nobody: copied by the first context writing in it
+    static final GlobalChunk EMPTY = new GlobalChunk(null);
+
+    final byte[] tags;
+    final long[] payloads;
+    final Object[] refs;
+    final boolean[] defined;
+    final Object owner;
+
+    private GlobalChunk(Object owner) {
+        this(owner, new byte[SIZE], new long[SIZE], new Object[SIZE], new boolean[SIZE]);
+    }
+
+    private GlobalChunk(Object owner, byte[] tags, long[] payloads, Object[] refs, boolean[] defined) {
+        this.owner = owner;
+        this.tags = tags;
+        this.payloads = payloads;
+        this.refs = refs;
+        this.defined = defined;
+    }
+
+    GlobalChunk copyFor(Object newOwner) {
+        return new GlobalChunk(newOwner, tags.clone(), payloads.clone(), refs.clone(), defined.clone());
+    }
+}
@@ -0,0 +1,59 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives each global variable name a stable slot. The compiler resolves the names once,
+ * then the values are read and written by slot in the root ScriptContext.
+ *
+ * Shared by all the sessions of a ScriptRuntime: the lookups do not lock, only giving a slot to a new name does.
+ */
+public class GlobalSymbols {
+
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+
+    /**
+     * Slot of the variable, created if the name was never seen.
+     */
+    public int slotOf(String name) {
+        Integer slot = slots.get(name);
+        if (slot != null) {
+            return slot;
+        }
+
+        synchronized (this) {
+            slot = slots.get(name);
+            if (slot == null) {
+                slot = slots.size();
+                String[] current = names;
+                if (slot == current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                current[slot] = name;
+                names = current;
+                // Published last, so that whoever sees the slot also sees its name
+                slots.put(name, slot);
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Slot of the variable, or -1 if the name was never seen.
+     */
+    public int lookup(String name) {
+        Integer slot = slots.get(name);
+        return (slot == null) ? -1 : slot;
+    }
+
+    public String nameOf(int slot) {
+        return names[slot];
+    }
+
+    public int size() {
+        return slots.size();
+    }
+}
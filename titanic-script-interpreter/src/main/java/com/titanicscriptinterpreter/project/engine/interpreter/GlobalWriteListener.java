@@ -0,0 +1,13 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+/**
+ * Told of every write of a global variable, see ScriptContext.setGlobalWriteListener().
+ * Called on the thread running the script, right after the write: it must be quick.
+ */
+public interface GlobalWriteListener {
+
+    /**
+     * The value in its unboxed form, see Value.
+     */
+    void globalWritten(int slot, byte tag, long payload, Object ref);
+}
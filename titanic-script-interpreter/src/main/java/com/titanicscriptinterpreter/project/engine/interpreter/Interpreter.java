@@ -1,13 +1,22 @@
 package com.titanicscriptinterpreter.project.engine.interpreter;
 
-import com.titanicscriptinterpreter.project.engine.Cli;
+import com.titanicscriptinterpreter.project.engine.bytecode.LocalResolver;
+import com.titanicscriptinterpreter.project.engine.coverage.CoverageData;
+import com.titanicscriptinterpreter.project.engine.coverage.CoverageMap;
+import com.titanicscriptinterpreter.project.engine.debug.ScriptHooks;
+import com.titanicscriptinterpreter.project.engine.debug.ScriptListener;
 import com.titanicscriptinterpreter.project.engine.lexer.BinaryOpExpression;
 import com.titanicscriptinterpreter.project.engine.lexer.CaseBlock;
 import com.titanicscriptinterpreter.project.engine.lexer.Condition;
+import com.titanicscriptinterpreter.project.engine.lexer.ConstantFolder;
 import com.titanicscriptinterpreter.project.engine.lexer.Expression;
 import com.titanicscriptinterpreter.project.engine.lexer.FunctionCallExpression;
 import com.titanicscriptinterpreter.project.engine.lexer.LiteralExpression;
 import com.titanicscriptinterpreter.project.engine.lexer.VariableExpression;
+import com.titanicscriptinterpreter.project.engine.metrics.ScriptMetrics;
+import com.titanicscriptinterpreter.project.engine.profiling.FunctionCallEvent;
+import com.titanicscriptinterpreter.project.engine.profiling.Profiling;
+import com.titanicscriptinterpreter.project.engine.profiling.ShadowStack;
 import com.titanicscriptinterpreter.project.engine.statements.AssignmentStatement;
 import com.titanicscriptinterpreter.project.engine.statements.ExitCodeStatement;
 import com.titanicscriptinterpreter.project.engine.statements.FunctionCallStatement;
@@ -20,109 +29,531 @@ import com.titanicscriptinterpreter.project.engine.statements.Statement;
 import com.titanicscriptinterpreter.project.engine.statements.SwitchStatement;
 import com.titanicscriptinterpreter.project.engine.statements.WhileStatement;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
-public class Interpreter {
+/**
+ * Tree-walking interpreter. The bytecode VM is faster, this one is kept as the reference to compare results with.
+ */
+public class Interpreter implements ScriptEngine {
 
     private final ScriptContext context;
-    private final Scanner scanner; // Required when you have to dialog with NPC
+    private final NativeRegistry natives;
+    private final Map<String, CallTarget> callTargets = new HashMap<>();
+    // The 'local' variables of each function, other than its parameters, see LocalResolver
+    private final Map<FunctionDeclarationStatement, List<String>> functionLocals = new IdentityHashMap<>();
+
+    // In specializing mode the conditions and operations adapt to the types of their operands, see SpecializedOperation
+    private boolean specializing;
+
+    // Set by a 'return' statement, until the function call returns it
+    private Object returnValue;
+    // Set by an 'exitcode' statement: the pending calls return at once and the statements in progress stop.
+    // Every statement evaluating an expression checks it, because a function called by the expression may have run 'exitcode'.
+    private boolean exiting;
+
+    // Of the script function running, 0 for the one called by the game
+    private int callDepth = -1;
+    // The event of the innermost profiled function call, see Profiling
+    private FunctionCallEvent profiledCall;
+    private ScriptMetrics metrics; // null: nothing measured
+    private CoverageData coverage; // null: nothing recorded
+    // The probes of the statements loaded, and of the branches of their 'if' and 'switch', see CoverageMap
+    private final Map<Statement, Integer> lineProbes = new IdentityHashMap<>();
+    private final Map<Statement, int[]> branchProbes = new IdentityHashMap<>();
+    private volatile ScriptHooks hooks; // null: no statement is wrapped in a TracedStatement
 
     public Interpreter(ScriptContext context) {
+        this(context, BuiltinFunctions.createRegistry());
+    }
+
+    public Interpreter(ScriptContext context, NativeRegistry natives) {
         this.context = context;
-        this.scanner = new Scanner(System.in);
+        this.natives = natives;
+    }
+
+    public void setSpecializing(boolean specializing) {
+        this.specializing = specializing;
+    }
+
+    /**
+     * Measure the calls of the game and of the natives from now on, null to stop.
+     */
+    public void setMetrics(ScriptMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Record the lines and branches run in the data, from the scripts loaded next on. Its map must hold them.
+     */
+    public void setCoverage(CoverageData coverage) {
+        this.coverage = coverage;
+    }
+
+    @Override
+    public void load(List<Statement> statements, ScriptContext ctx) {
+        List<Statement> folded = ConstantFolder.fold(statements);
+        this.link(folded);
+        if (coverage != null) {
+            this.resolveProbes(folded, null, coverage.getMap());
+        }
+        int completion = this.interpretStatements(folded, ctx);
+        if (hooks != null) {
+            // The functions it declared
+            this.setTraced(folded, null, true);
+        }
+        returnValue = null; // A 'return' in the top-level code only stops it
+        if (completion == Completion.EXIT) {
+            exiting = false;
+            throw new ExitScriptException();
+        }
+    }
+
+    /**
+     * Point every call site of the script to the target of its function name.
+     * A name declared by a script, this one or a previously loaded one, is a script function, even if it is not registered yet.
+     * The others must be natives called with the right number of arguments. Unknown names are reported now,
+     * calling them does nothing, unless a script declaring them is loaded later.
+     *
+     * @throws ScriptLinkException if a native is called with a wrong number of arguments
+     */
+    private void link(List<Statement> statements) {
+        Set<String> declared = new HashSet<>();
+        for (CallTarget target : callTargets.values()) {
+            if (target.getFunction() != null) {
+                declared.add(target.getFunctionName());
+            }
+        }
+        this.collectDeclarations(statements, declared);
+
+        // Natives may have been registered since the last load
+        for (CallTarget target : callTargets.values()) {
+            target.setNativeHandle(natives.handleOf(target.getFunctionName()));
+        }
+
+        Set<String> unknown = new TreeSet<>();
+        List<String> errors = new ArrayList<>();
+        this.linkStatements(statements, declared, unknown, errors);
+
+        if (!errors.isEmpty()) {
+            throw new ScriptLinkException(String.join(System.lineSeparator(), errors));
+        }
+        for (String funcName : unknown) {
+            System.err.println("Unknown function: " + funcName);
+        }
+    }
+
+    private void collectDeclarations(List<Statement> statements, Set<String> declared) {
+        for (Statement stmt : statements) {
+            if (stmt instanceof FunctionDeclarationStatement funcDecl) {
+                declared.add(funcDecl.getFunctionName());
+                this.collectDeclarations(funcDecl.getBody(), declared);
+            } else if (stmt instanceof IfStatement ifStatement) {
+                this.collectDeclarations(ifStatement.getThenStatements(), declared);
+                this.collectDeclarations(ifStatement.getElseStatements(), declared);
+            } else if (stmt instanceof WhileStatement whileStatement) {
+                this.collectDeclarations(whileStatement.getBody(), declared);
+            } else if (stmt instanceof SwitchStatement switchStatement) {
+                for (CaseBlock cb : switchStatement.getCases()) {
+                    this.collectDeclarations(cb.getStatements(), declared);
+                }
+            }
+        }
+    }
+
+    private void linkStatements(List<Statement> statements, Set<String> declared, Set<String> unknown, List<String> errors) {
+        for (Statement stmt : statements) {
+            if (stmt instanceof FunctionCallStatement callStatement) {
+                callStatement.setTarget(this.linkCall(callStatement.getFunctionName(), callStatement.getArguments().size(), declared, unknown, errors));
+                this.linkExpressions(callStatement.getArguments(), declared, unknown, errors);
+            } else if (stmt instanceof FunctionDeclarationStatement funcDecl) {
+                this.linkStatements(funcDecl.getBody(), declared, unknown, errors);
+            } else if (stmt instanceof IfStatement ifStatement) {
+                this.linkExpression(ifStatement.getCondition(), declared, unknown, errors);
+                this.linkStatements(ifStatement.getThenStatements(), declared, unknown, errors);
+                this.linkStatements(ifStatement.getElseStatements(), declared, unknown, errors);
+            } else if (stmt instanceof WhileStatement whileStatement) {
+                this.linkExpression(whileStatement.getCondition(), declared, unknown, errors);
+                this.linkStatements(whileStatement.getBody(), declared, unknown, errors);
+            } else if (stmt instanceof SwitchStatement switchStatement) {
+                this.linkExpression(switchStatement.getSwitchExpression(), declared, unknown, errors);
+                for (CaseBlock cb : switchStatement.getCases()) {
+                    this.linkExpression(cb.getValue(), declared, unknown, errors);
+                    this.linkStatements(cb.getStatements(), declared, unknown, errors);
+                }
+            } else if (stmt instanceof AssignmentStatement assignmentStatement) {
+                this.linkExpression(assignmentStatement.getRightHandSide(), declared, unknown, errors);
+            } else if (stmt instanceof ReturnStatement returnStatement) {
+                this.linkExpression(returnStatement.getReturnValue(), declared, unknown, errors);
+            }
+        }
+    }
+
+    private void linkExpressions(List<Expression> expressions, Set<String> declared, Set<String> unknown, List<String> errors) {
+        for (Expression expr : expressions) {
+            this.linkExpression(expr, declared, unknown, errors);
+        }
+    }
+
+    private void linkExpression(Expression expr, Set<String> declared, Set<String> unknown, List<String> errors) {
+        if (expr instanceof FunctionCallExpression callExpression) {
+            callExpression.setTarget(this.linkCall(callExpression.getFunctionName(), callExpression.getArguments().size(), declared, unknown, errors));
+            this.linkExpressions(callExpression.getArguments(), declared, unknown, errors);
+        } else if (expr instanceof BinaryOpExpression binaryOpExpression) {
+            this.linkExpression(binaryOpExpression.getLeft(), declared, unknown, errors);
+            this.linkExpression(binaryOpExpression.getRight(), declared, unknown, errors);
+        } else if (expr instanceof Condition condition) {
+            this.linkExpression(condition.getLeftExpr(), declared, unknown, errors);
+            this.linkExpression(condition.getRightExpr(), declared, unknown, errors);
+        }
+    }
+
+    private CallTarget linkCall(String funcName, int argCount, Set<String> declared, Set<String> unknown, List<String> errors) {
+        CallTarget target = this.targetOf(funcName);
+        if (!declared.contains(funcName)) {
+            int handle = target.getNativeHandle();
+            if (handle < 0) {
+                unknown.add(funcName);
+            } else if (!natives.acceptsArgumentCount(handle, argCount)) {
+                errors.add("Function " + funcName + " expects " + natives.arityOf(handle) + " argument(s), got " + argCount);
+            }
+        }
+        return target;
     }
-    
+
+    /**
+     * The same probes as the Compiler marks: the lines of the functions and the branches in them.
+     */
+    private void resolveProbes(List<Statement> statements, String function, CoverageMap map) {
+        for (Statement stmt : statements) {
+            if (function != null) {
+                int probe = map.lineProbeOf(function, stmt.getLine());
+                if (probe >= 0) {
+                    lineProbes.put(stmt, probe);
+                }
+            }
+
+            if (stmt instanceof FunctionDeclarationStatement funcDecl) {
+                this.resolveProbes(funcDecl.getBody(), funcDecl.getFunctionName(), map);
+            } else if (stmt instanceof IfStatement ifStatement) {
+                this.resolveBranchProbes(stmt, 2, function, map);
+                this.resolveProbes(ifStatement.getThenStatements(), function, map);
+                this.resolveProbes(ifStatement.getElseStatements(), function, map);
+            } else if (stmt instanceof WhileStatement whileStatement) {
+                this.resolveProbes(whileStatement.getBody(), function, map);
+            } else if (stmt instanceof SwitchStatement switchStatement) {
+                this.resolveBranchProbes(stmt, switchStatement.getCases().size() + 1, function, map);
+                for (CaseBlock cb : switchStatement.getCases()) {
+                    this.resolveProbes(cb.getStatements(), function, map);
+                }
+            }
+        }
+    }
+
+    private void resolveBranchProbes(Statement stmt, int branchCount, String function, CoverageMap map) {
+        if (function == null) {
+            return;
+        }
+        int[] probes = new int[branchCount];
+        for (int branch = 0; branch < branchCount; branch++) {
+            probes[branch] = map.branchProbeOf(function, stmt.getLine(), branch);
+        }
+        branchProbes.put(stmt, probes);
+    }
+
+    private void coverBranch(Statement stmt, int branch) {
+        int[] probes = branchProbes.get(stmt);
+        if (probes != null && probes[branch] >= 0) {
+            coverage.getProbes()[probes[branch]] = true;
+        }
+    }
+
+    /**
+     * Wrap the statements of every function registered, and of the ones loaded later. See ScriptHooks.
+     */
+    @Override
+    public synchronized void attach(ScriptHooks hooks) {
+        this.detach();
+        hooks.wrapNatives(natives);
+        this.hooks = hooks;
+        this.setTracedFunctions(true);
+    }
+
+    @Override
+    public synchronized void detach() {
+        ScriptHooks attached = hooks;
+        if (attached == null) {
+            return;
+        }
+        hooks = null;
+        this.setTracedFunctions(false);
+        attached.unwrapNatives(natives);
+    }
+
+    private void setTracedFunctions(boolean traced) {
+        for (CallTarget target : callTargets.values()) {
+            FunctionDeclarationStatement funcDecl = target.getFunction();
+            if (funcDecl != null) {
+                this.setTraced(funcDecl.getBody(), funcDecl, traced);
+            }
+        }
+    }
+
+    /**
+     * Swap the statements of the functions for TracedStatements, or back, in the lists themselves:
+     * the loops running over them see the change at their next statement.
+     *
+     * @param function null for the top-level code, which is not traced
+     */
+    private void setTraced(List<Statement> statements, FunctionDeclarationStatement function, boolean traced) {
+        for (int i = 0; i < statements.size(); i++) {
+            Statement stmt = statements.get(i);
+            if (stmt instanceof TracedStatement tracedStatement) {
+                stmt = tracedStatement.getOriginal();
+            }
+
+            if (stmt instanceof FunctionDeclarationStatement funcDecl) {
+                this.localsOf(funcDecl);
+                this.setTraced(funcDecl.getBody(), funcDecl, traced);
+            } else if (stmt instanceof IfStatement ifStatement) {
+                this.setTraced(ifStatement.getThenStatements(), function, traced);
+                this.setTraced(ifStatement.getElseStatements(), function, traced);
+            } else if (stmt instanceof WhileStatement whileStatement) {
+                this.setTraced(whileStatement.getBody(), function, traced);
+            } else if (stmt instanceof SwitchStatement switchStatement) {
+                for (CaseBlock cb : switchStatement.getCases()) {
+                    this.setTraced(cb.getStatements(), function, traced);
+                }
+            }
+
+            if (function != null) {
+                statements.set(i, traced ? new TracedStatement(stmt, function) : stmt);
+            }
+        }
+    }
+
+    private CallTarget targetOf(String funcName) {
+        CallTarget target = callTargets.get(funcName);
+        if (target == null) {
+            target = new CallTarget(funcName);
+            target.setNativeHandle(natives.handleOf(funcName));
+            callTargets.put(funcName, target);
+        }
+        return target;
+    }
+
     /**
      * Interpret a list of statements in a given context.
+     *
+     * @return a Completion code: NORMAL if every statement ran, otherwise the statement that stopped the list
      */
-    public void interpretStatements(List<Statement> statements, ScriptContext ctx) {
+    public int interpretStatements(List<Statement> statements, ScriptContext ctx) {
+        ShadowStack shadow = context.getShadowStack();
+        boolean[] probes = (coverage == null) ? null : coverage.getProbes();
         for (Statement stmt : statements) {
-            this.interpretStatement(stmt, ctx);
+            if (shadow != null) {
+                shadow.setLine(stmt.getLine());
+            }
+            if (probes != null) {
+                Integer probe = lineProbes.get(stmt);
+                if (probe != null) {
+                    probes[probe] = true;
+                }
+            }
+            int completion = this.interpretStatement(stmt, ctx);
+            if (completion != Completion.NORMAL) {
+                return completion;
+            }
         }
+        return Completion.NORMAL;
     }
 
     /**
      * Interpret a single statement in the given context.
      */
-    private void interpretStatement(Statement stmt, ScriptContext ctx) {
+    private int interpretStatement(Statement stmt, ScriptContext ctx) {
         if (stmt instanceof IfStatement ifStatement) {
-            this.interpretIfStatement(ifStatement, ctx);
+            return this.interpretIfStatement(ifStatement, ctx);
         } else if (stmt instanceof FunctionDeclarationStatement functionDeclarationStatement) {
             this.interpretFunctionDeclarationStatement(functionDeclarationStatement);
         } else if (stmt instanceof FunctionCallStatement functionCallStatement) {
-            this.interpretFunctionCallStatement(functionCallStatement, ctx);
+            return this.interpretFunctionCallStatement(functionCallStatement, ctx);
         } else if (stmt instanceof GlobalStatement globalStatement) {
             this.interpretGlobalStatement(globalStatement, ctx);
         } else if (stmt instanceof AssignmentStatement assignmentStatement) {
-            this.interpretAssignmentStatement(assignmentStatement, ctx);
+            return this.interpretAssignmentStatement(assignmentStatement, ctx);
         } else if (stmt instanceof ExitCodeStatement) {
-            this.interpretExitCodeStatement();
+            return this.interpretExitCodeStatement();
         } else if (stmt instanceof SwitchStatement switchStatement) {
-            this.interpretSwitchStatement(switchStatement, ctx);
+            return this.interpretSwitchStatement(switchStatement, ctx);
         } else if (stmt instanceof LocalStatement localStatement) {
             this.interpretLocalStatement(localStatement, ctx);
         } else if (stmt instanceof WhileStatement whileStatement) {
-            this.interpretWhileStatement(whileStatement, ctx);
+            return this.interpretWhileStatement(whileStatement, ctx, null);
         } else if (stmt instanceof ReturnStatement returnStatement) {
-            this.interpretReturnStatement(returnStatement);
+            return this.interpretReturnStatement(returnStatement, ctx);
+        } else if (stmt instanceof TracedStatement tracedStatement) {
+            return this.interpretTracedStatement(tracedStatement, ctx);
         } else {
             System.err.println("Unknown statement: " + stmt);
         }
+        return Completion.NORMAL;
     }
-    
-    private Object interpretReturnStatement(ReturnStatement stmt) {
-        return stmt.getReturnValue();
+
+    private int interpretTracedStatement(TracedStatement traced, ScriptContext ctx) {
+        Statement stmt = traced.getOriginal();
+        if (coverage != null) {
+            Integer probe = lineProbes.get(stmt);
+            if (probe != null) {
+                coverage.getProbes()[probe] = true;
+            }
+        }
+        ScriptHooks hooks = this.hooks;
+        if (hooks == null) {
+            // Detached while the list was running
+            return this.interpretStatement(stmt, ctx);
+        }
+
+        ScriptListener listener = hooks.getListener();
+        String function = traced.getFunctionName();
+        int line = stmt.getLine();
+        this.traceEntered(hooks, traced, ctx);
+
+        // Like the VM, a while loop is entered again at each check of its condition
+        int completion = (stmt instanceof WhileStatement whileStatement)
+                ? this.interpretWhileStatement(whileStatement, ctx, traced)
+                : this.interpretStatement(stmt, ctx);
+        if (completion == Completion.EXIT) {
+            return completion;
+        }
+        if (stmt instanceof AssignmentStatement assignmentStatement) {
+            String varName = assignmentStatement.getVariableName();
+            listener.variableWritten(function, varName, ctx.getVariable(varName), ctx);
+        }
+        listener.statementExited(function, line, ctx);
+        return completion;
+    }
+
+    private void traceEntered(ScriptHooks hooks, TracedStatement traced, ScriptContext ctx) {
+        ScriptListener listener = hooks.getListener();
+        String function = traced.getFunctionName();
+        int line = traced.getLine();
+        listener.statementEntered(function, line, ctx);
+        if (hooks.isBreakpoint(function, line)) {
+            // In the order of the slots of the VM: the parameters, then the 'local' variables
+            FunctionDeclarationStatement funcDecl = traced.getFunction();
+            Map<String, Object> scope = ctx.getLocalVariables();
+            Map<String, Object> locals = new LinkedHashMap<>();
+            for (String name : funcDecl.getParameters()) {
+                locals.put(name, scope.get(name));
+            }
+            for (String name : this.localsOf(funcDecl)) {
+                locals.put(name, scope.get(name));
+            }
+            listener.breakpointHit(function, line, locals, ctx);
+        }
+    }
+
+    private int interpretReturnStatement(ReturnStatement stmt, ScriptContext ctx) {
+        // A 'return' without value returns null, like reaching the end of the function
+        Object value = (stmt.getReturnValue() == null) ? null : this.evaluateExpression(stmt.getReturnValue(), ctx);
+        if (exiting) {
+            return Completion.EXIT;
+        }
+
+        returnValue = value;
+        return Completion.RETURN;
     }
 
     /**
      * @TODO this function probably has an issue. We do not parse multi-condition yet.
+     *
+     * @param traced the statement wrapping the loop while a ScriptHooks is attached, else null
      */
-    private void interpretWhileStatement(WhileStatement stmt, ScriptContext ctx) {
+    private int interpretWhileStatement(WhileStatement stmt, ScriptContext ctx, TracedStatement traced) {
         while (true) {
             // 1) Evaluate the condition
             Object condVal = this.evaluateExpression(stmt.getCondition(), ctx);
+            if (exiting) {
+                return Completion.EXIT;
+            }
 
             // 2) Convert it to a boolean (assuming some 'toBoolean' helper)
-            if (!this.toBoolean(condVal)) {
+            if (!Operators.toBoolean(condVal)) {
                 // If false, break the while loop
-                break;
+                return Completion.NORMAL;
             }
 
             // 3) If true, interpret the body statements
-            this.interpretStatements(stmt.getBody(), ctx);
+            int completion = this.interpretStatements(stmt.getBody(), ctx);
+            if (completion != Completion.NORMAL) {
+                return completion;
+            }
             // Then loop back and evaluate the condition again
+            ShadowStack shadow = context.getShadowStack();
+            if (shadow != null) {
+                shadow.setLine(stmt.getLine());
+            }
+            ScriptHooks hooks = this.hooks;
+            if (traced != null && hooks != null) {
+                this.traceEntered(hooks, traced, ctx);
+            }
         }
     }
 
-    private void interpretSwitchStatement(SwitchStatement stmt, ScriptContext ctx) {
+    private int interpretSwitchStatement(SwitchStatement stmt, ScriptContext ctx) {
         Object switchValue = this.evaluateExpression(stmt.getSwitchExpression(), ctx);
+        if (exiting) {
+            return Completion.EXIT;
+        }
 
         for (CaseBlock cb : stmt.getCases()) {
             Object caseVal = this.evaluateExpression(cb.getValue(), ctx);
+            if (exiting) {
+                return Completion.EXIT;
+            }
 
-            if (this.equalsOperator(switchValue, caseVal)) {
-                this.interpretStatements(cb.getStatements(), ctx);
-                break;
+            if (Operators.equalsOperator(switchValue, caseVal)) {
+                if (coverage != null) {
+                    this.coverBranch(stmt, stmt.getCases().indexOf(cb));
+                }
+                return this.interpretStatements(cb.getStatements(), ctx);
             }
         }
+        if (coverage != null) {
+            this.coverBranch(stmt, stmt.getCases().size());
+        }
+        return Completion.NORMAL;
     }
 
-    private void interpretExitCodeStatement() {
-        throw new ExitScriptException();
+    private int interpretExitCodeStatement() {
+        exiting = true;
+        return Completion.EXIT;
     }
 
-    private void interpretAssignmentStatement(AssignmentStatement stmt, ScriptContext ctx) {
+    private int interpretAssignmentStatement(AssignmentStatement stmt, ScriptContext ctx) {
         String varName = stmt.getVariableName();
         Expression rhs = stmt.getRightHandSide();
 
         Object value = this.evaluateExpression(rhs, ctx);
+        if (exiting) {
+            return Completion.EXIT;
+        }
 
-        if (ctx.getRootContext().hasVariable(varName)) { // Global var
-            ctx.getRootContext().setVariable(varName, value);
-        } else {
+        // Same binding as the compiler (see LocalResolver): parameters and 'local' variables first, otherwise global.
+        // The scope of a function holds all of them from its start, see runFunction()
+        if (ctx.hasVariableLocally(varName)) {
             ctx.setVariable(varName, value);
+        } else {
+            ctx.getRootContext().setVariable(varName, value);
         }
+        return Completion.NORMAL;
     }
 
     private void interpretGlobalStatement(GlobalStatement stmt, ScriptContext ctx) {
@@ -148,22 +579,32 @@ public class Interpreter {
 
         // Register in a function table (map) so that future "callFunction(funcName,...)" can find it
         context.registerFunction(funcName, stmt);
+        this.localsOf(stmt);
+        // and so that the linked call sites call it
+        this.targetOf(funcName).setFunction(stmt);
 
         // Help to debug
         System.out.println("Registered function: " + funcName);
     }
 
-    private void interpretIfStatement(IfStatement ifStmt, ScriptContext ctx) {
+    private int interpretIfStatement(IfStatement ifStmt, ScriptContext ctx) {
         Object conditionValue = this.evaluateExpression(ifStmt.getCondition(), ctx);
-        boolean isTrue = this.toBoolean(conditionValue);
+        if (exiting) {
+            return Completion.EXIT;
+        }
+
+        boolean isTrue = Operators.toBoolean(conditionValue);
+        if (coverage != null) {
+            this.coverBranch(ifStmt, isTrue ? 0 : 1);
+        }
         if (isTrue) {
-            this.interpretStatements(ifStmt.getThenStatements(), ctx);
+            return this.interpretStatements(ifStmt.getThenStatements(), ctx);
         } else {
-            this.interpretStatements(ifStmt.getElseStatements(), ctx);
+            return this.interpretStatements(ifStmt.getElseStatements(), ctx);
         }
     }
 
-    private void interpretFunctionCallStatement(FunctionCallStatement stmt, ScriptContext ctx) {
+    private int interpretFunctionCallStatement(FunctionCallStatement stmt, ScriptContext ctx) {
         String funcName = stmt.getFunctionName();
         List<Expression> argExprs = stmt.getArguments();
 
@@ -173,7 +614,40 @@ public class Interpreter {
             argValues.add(val);
         }
 
-        this.callFunction(funcName, argValues, ctx);
+        if (stmt.getTarget() == null) {
+            this.call(funcName, argValues, ctx);
+        } else {
+            this.call(stmt.getTarget(), argValues, ctx);
+        }
+        return exiting ? Completion.EXIT : Completion.NORMAL;
+    }
+
+    /**
+     * Call a linked call site: the script function if it is registered, otherwise the native with the same name.
+     */
+    private Object call(CallTarget target, List<Object> argValues, ScriptContext ctx) {
+        if (exiting) {
+            // An argument called a function that ran 'exitcode'
+            return null;
+        }
+
+        FunctionDeclarationStatement funcDecl = target.getFunction();
+        if (funcDecl != null) {
+            return this.executeFunction(funcDecl, argValues);
+        }
+
+        int handle = target.getNativeHandle();
+        if (handle < 0) {
+            // Reported when the script was linked
+            return EmptyFunctionResult.INSTANCE;
+        }
+        // The arity was not checked if a script declares this name but it is not registered yet
+        if (!natives.acceptsArgumentCount(handle, argValues.size())) {
+            System.err.println("Function " + target.getFunctionName() + " expects " + natives.arityOf(handle) + " argument(s), got " + argValues.size());
+            return EmptyFunctionResult.INSTANCE;
+        }
+
+        return this.callNative(handle, argValues, ctx);
     }
 
     /**
@@ -181,61 +655,108 @@ public class Interpreter {
      * - A function declared in the script.
      * - A function ... not declared in the script (the ones that are "global" to the engine).
      */
+    @Override
     public Object callFunction(String funcName, List<Object> argValues, ScriptContext ctx) {
+        ScriptMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return this.callGame(funcName, argValues, ctx);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return this.callGame(funcName, argValues, ctx);
+        } catch (ExitScriptException e) {
+            metrics.countExit();
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.countFailure();
+            throw e;
+        } finally {
+            metrics.recordFunction(funcName, System.nanoTime() - start);
+        }
+    }
+
+    private Object callGame(String funcName, List<Object> argValues, ScriptContext ctx) {
+        Object result = this.call(funcName, argValues, ctx);
+        if (exiting) {
+            exiting = false;
+            throw new ExitScriptException();
+        }
+        return result;
+    }
+
+    /**
+     * Call by name, for the call sites that were not linked.
+     */
+    private Object call(String funcName, List<Object> argValues, ScriptContext ctx) {
+        if (exiting) {
+            return null;
+        }
+
         // First, try function declared in the script
         FunctionDeclarationStatement funcDecl = context.getFunction(funcName);
         if (funcDecl != null) {
             return this.executeFunction(funcDecl, argValues);
         }
 
-        switch (funcName) {
-            case "puppetspeak":
-                Cli.outputMessage("Play dialog sound: '" + argValues.get(0) + "'.");
-                break;
-            case "message":
-                Cli.outputMessage("Level designer comment: '" + argValues.get(0) + "'.");
-                break;
-            case "puppetclear":
-                Cli.outputMessage("Hide answers to the character you are talking to.");
-                break;
-            case "puppetbevel":
-                Cli.outputMessage("Add answer option (id " + argValues.get(1) + "): " + argValues.get(0) + "'.");
-                break;
-            case "puppetevent":
-                Cli.outputMessage("Enter the answer id: ");
-                int answerId = Integer.parseInt(scanner.nextLine());
-                Cli.outputNewLine();
-                
-                return answerId;
-            case "spotmovie":
-                Cli.outputMessage("Launch video: '" + argValues.get(0) + "'.");
-                break;
-            case "opentrackfile":
-                Cli.outputMessage("Start playing track: '" + argValues.get(0) + "'.");
-                break;
-            case "closetrackfile":
-                Cli.outputMessage("Stop playing track: '" + argValues.get(0) + "'.");
-                break;
-            case "delay":
-                Cli.outputMessage("Adding a delay of: '" + argValues.get(0) + "'.");
-                break;
-            case "advancephase":
-                int currentPhase = (int) ctx.getRootContext().getVariable("phase");
-                currentPhase++;
-                ctx.getRootContext().setVariable("phase", currentPhase);
-                break;
-            default:
-                System.err.println("Unknown function: " + funcName);
-                break;
+        // Then the natives, resolved by name at each call in this mode
+        int handle = natives.handleOf(funcName);
+        if (handle < 0) {
+            System.err.println("Unknown function: " + funcName);
+            return EmptyFunctionResult.INSTANCE;
+        }
+        if (!natives.acceptsArgumentCount(handle, argValues.size())) {
+            System.err.println("Function " + funcName + " expects " + natives.arityOf(handle) + " argument(s), got " + argValues.size());
+            return EmptyFunctionResult.INSTANCE;
         }
 
-        return new EmptyFunctionResult();
+        return this.callNative(handle, argValues, ctx);
+    }
+
+    private Object callNative(int handle, List<Object> argValues, ScriptContext ctx) {
+        ScriptMetrics metrics = this.metrics;
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        Object result = Profiling.isEnabled()
+                ? Profiling.callNative(natives, handle, argValues, ctx, callDepth + 1, profiledCall)
+                : natives.call(handle, argValues, ctx);
+        if (metrics != null) {
+            metrics.recordNative(handle, System.nanoTime() - start);
+        }
+        return result;
     }
 
     /**
      * Executes a function with the given argument
      */
     private Object executeFunction(FunctionDeclarationStatement funcDecl, List<Object> argValues) {
+        callDepth++;
+        FunctionCallEvent caller = profiledCall;
+        FunctionCallEvent event = null;
+        if (Profiling.isEnabled()) {
+            event = Profiling.begin(funcDecl.getFunctionName(), false, callDepth, argValues.size());
+            profiledCall = event;
+        }
+        ShadowStack shadow = context.getShadowStack();
+        int shadowDepth = 0;
+        if (shadow != null) {
+            shadowDepth = shadow.getDepth();
+            shadow.push(funcDecl.getFunctionName(), 0);
+        }
+        try {
+            return this.runFunction(funcDecl, argValues);
+        } finally {
+            callDepth--;
+            if (shadow != null) {
+                shadow.popTo(shadowDepth);
+            }
+            if (event != null) {
+                profiledCall = caller;
+                Profiling.end(event, caller);
+            }
+        }
+    }
+
+    private Object runFunction(FunctionDeclarationStatement funcDecl, List<Object> argValues) {
         // Create a new local context or scope
         ScriptContext localContext = new ScriptContext();
         // link the parent context because we want the access to the global context
@@ -248,19 +769,36 @@ public class Interpreter {
             Object value = (i < argValues.size()) ? argValues.get(i) : null;
             localContext.setVariable(paramName, value);
         }
+        // Like the slots of the VM, the 'local' variables exist from the start of the function, at zero
+        for (String varName : this.localsOf(funcDecl)) {
+            localContext.setVariable(varName, 0);
+        }
 
         // Interpret the function in this local context
-        try {
-            this.interpretStatements(funcDecl.getBody(), localContext);
-        } catch (ReturnException re) {
-            // if your language allows 'return', you might throw a ReturnException to unwind
-            return re.getReturnValue();
+        if (this.interpretStatements(funcDecl.getBody(), localContext) == Completion.RETURN) {
+            Object result = returnValue;
+            returnValue = null;
+            return result;
         }
 
-        // If no return keyword was encountered
+        // If no return keyword was encountered, or 'exitcode' (then the caller checks 'exiting')
         return null;
     }
 
+    /**
+     * Resolved once per declaration, before its statements can be wrapped by attach().
+     */
+    private List<String> localsOf(FunctionDeclarationStatement funcDecl) {
+        List<String> locals = functionLocals.get(funcDecl);
+        if (locals == null) {
+            List<String> parameters = funcDecl.getParameters();
+            Set<String> names = LocalResolver.resolve(parameters, funcDecl.getBody()).keySet();
+            locals = List.copyOf(names).subList(new HashSet<>(parameters).size(), names.size());
+            functionLocals.put(funcDecl, locals);
+        }
+        return locals;
+    }
+
     private Object evaluateExpression(Expression expr, ScriptContext ctx) {
         if (expr instanceof LiteralExpression literalExpression) {
             return this.interpretLiteral(literalExpression);
@@ -284,34 +822,32 @@ public class Interpreter {
         Object rightVal = evaluateExpression(cond.getRightExpr(), ct);
         String op = cond.getOperator();
 
+        if (specializing) {
+            SpecializedOperation specialization = cond.getSpecialization();
+            if (specialization == null) {
+                specialization = SpecializedOperation.forCondition(op);
+                cond.setSpecialization(specialization);
+            }
+            return specialization.apply(leftVal, rightVal);
+        }
+
         switch (op) {
             case "=":
-                return equalsOperator(leftVal, rightVal);
+                return Operators.equalsOperator(leftVal, rightVal);
             case "!=":
-                return !equalsOperator(leftVal, rightVal);
+                return !Operators.equalsOperator(leftVal, rightVal);
             case ">":
-                return compareGreater(leftVal, rightVal);
+                return Operators.compareGreater(leftVal, rightVal);
             // etc.
         }
         return false;
     }
 
-    /** @TODO probably incomplete */
+    /**
+     * The value was decoded when the script was parsed.
+     */
     private Object interpretLiteral(LiteralExpression litExpr) {
-        switch (litExpr.getLiteralType()) {
-            case NUMBER:
-                String numStr = litExpr.getLiteral();
-                if (numStr.contains(".")) {
-                    return Double.parseDouble(numStr);
-                } else {
-                    return Integer.parseInt(numStr);
-                }
-            case STRING:
-                return litExpr.getLiteral();
-            case BOOLEAN:
-                return Boolean.parseBoolean(litExpr.getLiteral());
-        }
-        return null;
+        return litExpr.getValue();
     }
 
     private Object interpretVariable(VariableExpression varExpr, ScriptContext ctx) {
@@ -328,7 +864,10 @@ public class Interpreter {
             argValues.add(evaluateExpression(argE, ctx));
         }
 
-        return this.callFunction(funcName, argValues, ctx);
+        if (callExpr.getTarget() == null) {
+            return this.call(funcName, argValues, ctx);
+        }
+        return this.call(callExpr.getTarget(), argValues, ctx);
     }
 
     private Object interpretBinaryOpExpression(BinaryOpExpression binExpr, ScriptContext ctx) {
@@ -336,60 +875,32 @@ public class Interpreter {
         Object rightVal = this.evaluateExpression(binExpr.getRight(), ctx);
         String op = binExpr.getOperator();
 
+        if (specializing) {
+            SpecializedOperation specialization = binExpr.getSpecialization();
+            if (specialization == null) {
+                specialization = SpecializedOperation.forBinaryOp(op);
+                binExpr.setSpecialization(specialization);
+            }
+            // Null for the unsupported operators, reported below
+            if (specialization != null) {
+                return specialization.apply(leftVal, rightVal);
+            }
+        }
+
         switch (op) {
             case "=":
-                return this.equalsOperator(leftVal, rightVal);
+                return Operators.equalsOperator(leftVal, rightVal);
             case "!=":
-                return !this.equalsOperator(leftVal, rightVal);
+                return !Operators.equalsOperator(leftVal, rightVal);
             case ">":
-                return this.compareGreater(leftVal, rightVal);
+                return Operators.compareGreater(leftVal, rightVal);
             case "<":
-                return this.compareLess(leftVal, rightVal);
+                return Operators.compareLess(leftVal, rightVal);
             case "&":
-                return this.toBoolean(leftVal) && toBoolean(rightVal);
+                return Operators.toBoolean(leftVal) && Operators.toBoolean(rightVal);
             default:
                 System.err.println("Unsupported operator: " + op);
                 return null;
         }
     }
-
-    private boolean equalsOperator(Object left, Object right) {
-        if (left == null && right == null) {
-            return true;
-        }
-        if (left == null) {
-            return false;
-        }
-        return left.equals(right);
-    }
-
-    private boolean compareGreater(Object left, Object right) {
-        if (left instanceof Number && right instanceof Number) {
-            double l = ((Number) left).doubleValue();
-            double r = ((Number) right).doubleValue();
-            return l > r;
-        }
-        // False or if something is wrong
-        return false;
-    }
-
-    private boolean compareLess(Object left, Object right) {
-        if (left instanceof Number && right instanceof Number) {
-            double l = ((Number) left).doubleValue();
-            double r = ((Number) right).doubleValue();
-            return l < r;
-        }
-        return false;
-    }
-
-    private boolean toBoolean(Object val) {
-        if (val instanceof Boolean) {
-            return (Boolean) val;
-        } else if (val instanceof Number) {
-            return ((Number) val).doubleValue() != 0.0;
-        } else if (val == null) {
-            return false;
-        }
-        return true;
-    }
 }
@@ -0,0 +1,16 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+import java.util.List;
+
+/**
+ * A function provided by the game engine to the scripts. Registered in a NativeRegistry with its name and arity.
+ */
+@FunctionalInterface
+public interface NativeFunction {
+
+    /**
+     * @param argValues as many values as the arity declared at registration
+     * @param ctx the context of the caller, its root holds the global variables
+     */
+    Object call(List<Object> argValues, ScriptContext ctx);
+}
@@ -0,0 +1,79 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The native functions the game engine registers at startup. Each one gets a handle, its index in the table,
+ * so that calls bound when the script is linked are an array access.
+ */
+public class NativeRegistry {
+
+    /** Arity of a native accepting any number of arguments. */
+    public static final int ANY_ARITY = -1;
+
+    private final Map<String, Integer> handles = new HashMap<>();
+    private String[] names = new String[16];
+    private int[] arities = new int[16];
+    // Copied on each register: a ScriptHooks wraps the natives while the scripts call them on other threads
+    private volatile NativeFunction[] functions = new NativeFunction[16];
+
+    /**
+     * Registering a name again replaces the function but keeps the handle, so already linked scripts use the new one.
+     *
+     * @return the handle of the function
+     */
+    public synchronized int register(String name, int arity, NativeFunction function) {
+        Integer handle = handles.get(name);
+        NativeFunction[] table = functions;
+        if (handle == null) {
+            handle = handles.size();
+            if (handle == table.length) {
+                names = Arrays.copyOf(names, handle * 2);
+                arities = Arrays.copyOf(arities, handle * 2);
+            }
+            handles.put(name, handle);
+        }
+        names[handle] = name;
+        arities[handle] = arity;
+        table = Arrays.copyOf(table, Math.max(table.length, names.length));
+        table[handle] = function;
+        functions = table;
+
+        return handle;
+    }
+
+    /**
+     * @return the handle, or -1 if no native has this name
+     */
+    public int handleOf(String name) {
+        Integer handle = handles.get(name);
+        return (handle == null) ? -1 : handle;
+    }
+
+    public String nameOf(int handle) {
+        return names[handle];
+    }
+
+    public int arityOf(int handle) {
+        return arities[handle];
+    }
+
+    public boolean acceptsArgumentCount(int handle, int argCount) {
+        return arities[handle] == ANY_ARITY || arities[handle] == argCount;
+    }
+
+    public NativeFunction functionOf(int handle) {
+        return functions[handle];
+    }
+
+    public Object call(int handle, List<Object> argValues, ScriptContext ctx) {
+        return functions[handle].call(argValues, ctx);
+    }
+
+    public int size() {
+        return handles.size();
+    }
+}
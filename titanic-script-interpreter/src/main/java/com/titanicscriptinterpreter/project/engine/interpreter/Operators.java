@@ -0,0 +1,51 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+/**
+ * Comparison and truthiness rules of the script language.
+ * Shared by the tree-walking interpreter and the bytecode VM so both give the same results.
+ */
+public final class Operators {
+
+    private Operators() {
+    }
+
+    public static boolean equalsOperator(Object left, Object right) {
+        if (left == null && right == null) {
+            return true;
+        }
+        if (left == null) {
+            return false;
+        }
+        return left.equals(right);
+    }
+
+    public static boolean compareGreater(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            double l = ((Number) left).doubleValue();
+            double r = ((Number) right).doubleValue();
+            return l > r;
+        }
+        // False or if something is wrong
+        return false;
+    }
+
+    public static boolean compareLess(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            double l = ((Number) left).doubleValue();
+            double r = ((Number) right).doubleValue();
+            return l < r;
+        }
+        return false;
+    }
+
+    public static boolean toBoolean(Object val) {
+        if (val instanceof Boolean) {
+            return (Boolean) val;
+        } else if (val instanceof Number) {
+            return ((Number) val).doubleValue() != 0.0;
+        } else if (val == null) {
+            return false;
+        }
+        return true;
+    }
+}
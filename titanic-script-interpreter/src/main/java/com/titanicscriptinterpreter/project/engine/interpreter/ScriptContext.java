@@ -1,14 +1,45 @@
 package com.titanicscriptinterpreter.project.engine.interpreter;
 
+import com.titanicscriptinterpreter.project.engine.profiling.ShadowStack;
+import com.titanicscriptinterpreter.project.engine.lexer.Value;
+import com.titanicscriptinterpreter.project.engine.lexer.ValueType;
 import com.titanicscriptinterpreter.project.engine.statements.FunctionDeclarationStatement;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * A scope of variables. The root context holds the global variables, by slot (see GlobalSymbols).
+ * The tree-walking interpreter also creates child contexts for function calls, they hold their variables by name.
+ */
 public class ScriptContext {
     private Map<String, FunctionDeclarationStatement> functionMap = new HashMap<>();
     private Map<String, Object> variables = new HashMap<>();
     private ScriptContext parent; // optional parent scope
 
+    // Only used by the root context
+    private GlobalSymbols globalSymbols;
+    // Unboxed, see Value: the VM reads and writes them without converting them to objects.
+    // By chunks of slots, shared with the forks until written, see copyGlobals()
+    private GlobalChunk[] globalChunks = new GlobalChunk[0];
+    private Object globalOwner = new Object(); // The chunks this context can change in place
+    private boolean ownsGlobalChunks = true; // The array of chunks is not shared with a fork
+    private ScriptIO io;
+    private boolean suspendable;
+    private GlobalWriteListener globalWriteListener;
+    private ShadowStack shadowStack;
+
+    public ScriptContext() {
+    }
+
+    /**
+     * A root context using an existing symbol table, so that code compiled against it can run here.
+     */
+    public ScriptContext(GlobalSymbols globalSymbols) {
+        this.globalSymbols = globalSymbols;
+    }
+
     public void setParent(ScriptContext parentContext) {
         this.parent = parentContext;
     }
@@ -26,6 +57,10 @@ public class ScriptContext {
     }
 
     public void setVariable(String varName, Object value) {
+        if (parent == null) {
+            this.setGlobal(this.getGlobalSymbols().slotOf(varName), value);
+            return;
+        }
         variables.put(varName, value);
     }
 
@@ -33,16 +68,21 @@ public class ScriptContext {
      * Returns the variable value if found in this scope or any parent scope.
      */
     public Object getVariable(String name) {
+        if (parent == null) {
+            int slot = this.getGlobalSymbols().lookup(name);
+            return (slot == -1) ? null : this.getGlobal(slot);
+        }
         if (variables.containsKey(name)) {
             return variables.get(name);
         }
-        if (parent != null) {
-            return parent.getVariable(name);
-        }
-        return null;  // not found
+        return parent.getVariable(name);
     }
     
     public boolean hasVariable(String name) {
+        if (parent == null) {
+            int slot = this.getGlobalSymbols().lookup(name);
+            return slot != -1 && this.isGlobalDefined(slot);
+        }
         if (variables.containsKey(name)) {
             return true;
         }
@@ -50,10 +90,20 @@ public class ScriptContext {
         return false;
     }
 
+    /**
+     * The variables of this scope, without the ones of its parents. Empty for the root context, its globals are by slot.
+     */
+    public Map<String, Object> getLocalVariables() {
+        return (parent == null) ? Collections.emptyMap() : Collections.unmodifiableMap(variables);
+    }
+
     /**
      * Checks if the current local scope contains a variable.
      */
     public boolean hasVariableLocally(String name) {
+        if (parent == null) {
+            return this.hasVariable(name);
+        }
         return variables.containsKey(name);
     }
 
@@ -68,5 +118,170 @@ public class ScriptContext {
         // recursively climb up
         return parent.getRootContext();
     }
-}
 
+    /**
+     * A fork: a new root context with the same symbols and global values, without the functions, the ScriptIO
+     * nor the GlobalWriteListener and the ShadowStack. Root context only.
+     *
+     * The values are not copied, both contexts share them until one writes a global: then it copies the array of chunks
+     * and the chunk of the slot, nothing else. So the fork is O(1) and both contexts can then run on different threads.
+     * Fork on the thread running this context, or while nothing runs on it. A fork never written can itself be forked
+     * by several threads at once: forking only writes to a context that owns its chunks.
+     */
+    public ScriptContext copyGlobals() {
+        ScriptContext copy = new ScriptContext(this.getGlobalSymbols());
+        copy.globalChunks = globalChunks;
+        copy.ownsGlobalChunks = false;
+        if (ownsGlobalChunks) {
+            // This context does not own its chunks anymore either.
+            // Otherwise none of them is owned already: they are copied on write, with the array
+            ownsGlobalChunks = false;
+            globalOwner = new Object();
+        }
+        return copy;
+    }
+
+    /**
+     * The ScriptIO of the root context, or the console if none was set.
+     */
+    public ScriptIO getIO() {
+        ScriptContext root = this.getRootContext();
+        return (root.io == null) ? ConsoleIO.standard() : root.io;
+    }
+
+    public void setIO(ScriptIO io) {
+        this.getRootContext().io = io;
+    }
+
+    /**
+     * True while the VM runs a call it can suspend (VirtualMachine.start() and resume()):
+     * then the natives waiting for something return a Suspension instead of blocking.
+     */
+    public boolean canSuspend() {
+        return this.getRootContext().suspendable;
+    }
+
+    public void setSuspendable(boolean suspendable) {
+        this.getRootContext().suspendable = suspendable;
+    }
+
+    public GlobalSymbols getGlobalSymbols() {
+        if (globalSymbols == null) {
+            globalSymbols = new GlobalSymbols();
+        }
+        return globalSymbols;
+    }
+
+    /**
+     * Resolve a global variable name once, then use getGlobal() and setGlobal() with the slot.
+     * Root context only.
+     */
+    public int resolveGlobal(String name) {
+        int slot = this.getGlobalSymbols().slotOf(name);
+        this.ensureGlobalCapacity(slot + 1);
+        return slot;
+    }
+
+    public Object getGlobal(int slot) {
+        int index = slot >>> GlobalChunk.BITS;
+        if (index >= globalChunks.length) {
+            return null;
+        }
+        GlobalChunk chunk = globalChunks[index];
+        int i = slot & GlobalChunk.MASK;
+        return Value.toObject(chunk.tags[i], chunk.payloads[i], chunk.refs[i]);
+    }
+
+    public void setGlobal(int slot, Object value) {
+        this.setGlobal(slot, Value.tagOf(value), Value.payloadOf(value), value);
+    }
+
+    public byte getGlobalTag(int slot) {
+        int index = slot >>> GlobalChunk.BITS;
+        return (index < globalChunks.length) ? globalChunks[index].tags[slot & GlobalChunk.MASK] : ValueType.NULL;
+    }
+
+    public long getGlobalPayload(int slot) {
+        int index = slot >>> GlobalChunk.BITS;
+        return (index < globalChunks.length) ? globalChunks[index].payloads[slot & GlobalChunk.MASK] : 0;
+    }
+
+    public Object getGlobalRef(int slot) {
+        int index = slot >>> GlobalChunk.BITS;
+        return (index < globalChunks.length) ? globalChunks[index].refs[slot & GlobalChunk.MASK] : null;
+    }
+
+    /**
+     * @param ref the object of the value if there is one, otherwise null
+     */
+    public void setGlobal(int slot, byte tag, long payload, Object ref) {
+        int index = slot >>> GlobalChunk.BITS;
+        if (index >= globalChunks.length) {
+            this.ensureGlobalCapacity(Math.max(slot + 1, this.getGlobalSymbols().size()));
+        }
+        GlobalChunk chunk = globalChunks[index];
+        if (chunk.owner != globalOwner) {
+            chunk = this.copyChunk(index);
+        }
+        int i = slot & GlobalChunk.MASK;
+        chunk.tags[i] = tag;
+        chunk.payloads[i] = payload;
+        chunk.refs[i] = ref;
+        chunk.defined[i] = true;
+        if (globalWriteListener != null) {
+            globalWriteListener.globalWritten(slot, tag, payload, ref);
+        }
+    }
+
+    /**
+     * Told of the writes of the global variables from now on, for instance a journal. Null to stop. Root context only.
+     */
+    public void setGlobalWriteListener(GlobalWriteListener globalWriteListener) {
+        this.globalWriteListener = globalWriteListener;
+    }
+
+    /**
+     * Kept by the engines while a Sampler is attached, null otherwise. Root context only.
+     */
+    public ShadowStack getShadowStack() {
+        return shadowStack;
+    }
+
+    public void setShadowStack(ShadowStack shadowStack) {
+        this.shadowStack = shadowStack;
+    }
+
+    /**
+     * False until a value was set, even null, like a variable not yet in the scope.
+     */
+    public boolean isGlobalDefined(int slot) {
+        int index = slot >>> GlobalChunk.BITS;
+        return index < globalChunks.length && globalChunks[index].defined[slot & GlobalChunk.MASK];
+    }
+
+    /**
+     * Grow the global storage so that every slot below the given count is an array access.
+     */
+    public void ensureGlobalCapacity(int count) {
+        int chunkCount = (count + GlobalChunk.MASK) >>> GlobalChunk.BITS;
+        if (chunkCount > globalChunks.length) {
+            int oldLength = globalChunks.length;
+            globalChunks = Arrays.copyOf(globalChunks, Math.max(chunkCount, oldLength * 2));
+            Arrays.fill(globalChunks, oldLength, globalChunks.length, GlobalChunk.EMPTY);
+            ownsGlobalChunks = true;
+        }
+    }
+
+    /**
+     * The first write in a chunk shared with a fork, or never written.
+     */
+    private GlobalChunk copyChunk(int index) {
+        if (!ownsGlobalChunks) {
+            globalChunks = globalChunks.clone();
+            ownsGlobalChunks = true;
+        }
+        GlobalChunk chunk = globalChunks[index].copyFor(globalOwner);
+        globalChunks[index] = chunk;
+        return chunk;
+    }
+}
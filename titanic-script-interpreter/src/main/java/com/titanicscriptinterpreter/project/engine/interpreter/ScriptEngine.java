@@ -0,0 +1,28 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+import com.titanicscriptinterpreter.project.engine.debug.ScriptHooks;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import java.util.List;
+
+/**
+ * What the game needs from an execution mode: load a parsed script, then call its functions.
+ */
+public interface ScriptEngine {
+
+    /**
+     * Run the top-level statements of a parsed script, which registers its functions.
+     */
+    void load(List<Statement> statements, ScriptContext ctx);
+
+    Object callFunction(String funcName, List<Object> argValues, ScriptContext ctx);
+
+    /**
+     * Trace the scripts and stop at the breakpoints of the hooks, even while they run. Replaces the hooks attached.
+     */
+    void attach(ScriptHooks hooks);
+
+    /**
+     * Back to the code run without hooks.
+     */
+    void detach();
+}
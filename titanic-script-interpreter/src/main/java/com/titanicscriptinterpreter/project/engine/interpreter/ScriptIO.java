@@ -0,0 +1,15 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+/**
+ * Where the natives of a session write their messages and read the player answers.
+ * Set on the root ScriptContext, so each session can have its own.
+ */
+public interface ScriptIO {
+
+    void output(String message);
+
+    /**
+     * Blocks until the player answers.
+     */
+    String readLine();
+}
@@ -0,0 +1,12 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+/**
+ * Thrown when a script cannot be linked, for instance it calls a native function with the wrong number of arguments.
+ */
+public class ScriptLinkException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public ScriptLinkException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,156 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+/**
+ * The operation of a Condition or BinaryOpExpression node when the Interpreter runs in specializing mode.
+ *
+ * It starts uninitialized, then specializes on the types of the first operands it sees: two Integers (the usual case,
+ * a global compared to a small number) are compared as ints, two Strings with equals, anything else goes through Operators.
+ * When an int or string node sees other types, it falls back to generic for good, so a node changes state at most twice.
+ * The results are always the same as with Operators.
+ *
+ * The state is not synchronized: a node seen by two threads at once may specialize twice, which is harmless.
+ */
+public class SpecializedOperation {
+
+    private static final int EQ = 0;
+    private static final int NE = 1;
+    private static final int GT = 2;
+    private static final int LT = 3;
+    private static final int AND = 4;
+    private static final int FALSE = 5; // The operators a Condition does not know
+
+    private static final int UNINITIALIZED = 0;
+    private static final int INT = 1;
+    private static final int STRING = 2;
+    private static final int GENERIC = 3;
+
+    private final int operator;
+    private int state = UNINITIALIZED;
+
+    private SpecializedOperation(int operator) {
+        this.operator = operator;
+    }
+
+    /**
+     * Same operators as Interpreter.evaluateCondition, the unknown ones are false.
+     */
+    static SpecializedOperation forCondition(String op) {
+        switch (op) {
+            case "=":
+                return new SpecializedOperation(EQ);
+            case "!=":
+                return new SpecializedOperation(NE);
+            case ">":
+                return new SpecializedOperation(GT);
+            default:
+                return new SpecializedOperation(FALSE);
+        }
+    }
+
+    /**
+     * Same operators as Interpreter.interpretBinaryOpExpression.
+     *
+     * @return null for an unsupported operator, the Interpreter reports it
+     */
+    static SpecializedOperation forBinaryOp(String op) {
+        switch (op) {
+            case "=":
+                return new SpecializedOperation(EQ);
+            case "!=":
+                return new SpecializedOperation(NE);
+            case ">":
+                return new SpecializedOperation(GT);
+            case "<":
+                return new SpecializedOperation(LT);
+            case "&":
+                return new SpecializedOperation(AND);
+            default:
+                return null;
+        }
+    }
+
+    boolean apply(Object left, Object right) {
+        switch (state) {
+            case INT:
+                if (left instanceof Integer l && right instanceof Integer r) {
+                    return this.applyInt(l, r);
+                }
+                break;
+            case STRING:
+                if (left instanceof String l && right instanceof String r) {
+                    return this.applyString(l, r);
+                }
+                break;
+            case GENERIC:
+                return this.applyGeneric(left, right);
+            default:
+                state = this.specializeFor(left, right);
+                return this.apply(left, right);
+        }
+
+        // Unexpected types: de-specialize
+        state = GENERIC;
+        return this.applyGeneric(left, right);
+    }
+
+    private int specializeFor(Object left, Object right) {
+        if (left instanceof Integer && right instanceof Integer) {
+            return INT;
+        } else if (left instanceof String && right instanceof String) {
+            return STRING;
+        }
+        return GENERIC;
+    }
+
+    private boolean applyInt(int left, int right) {
+        switch (operator) {
+            case EQ:
+                return left == right;
+            case NE:
+                return left != right;
+            case GT:
+                return left > right;
+            case LT:
+                return left < right;
+            case AND:
+                return left != 0 && right != 0;
+            default:
+                return false;
+        }
+    }
+
+    private boolean applyString(String left, String right) {
+        switch (operator) {
+            case EQ:
+                return left.equals(right);
+            case NE:
+                return !left.equals(right);
+            case AND:
+                return true; // A string is always true
+            default:
+                return false; // Strings are not ordered
+        }
+    }
+
+    private boolean applyGeneric(Object left, Object right) {
+        switch (operator) {
+            case EQ:
+                return Operators.equalsOperator(left, right);
+            case NE:
+                return !Operators.equalsOperator(left, right);
+            case GT:
+                return Operators.compareGreater(left, right);
+            case LT:
+                return Operators.compareLess(left, right);
+            case AND:
+                return Operators.toBoolean(left) && Operators.toBoolean(right);
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SpecializedOperation{operator=" + operator + ", state=" + state + "}";
+    }
+}
@@ -0,0 +1,43 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+/**
+ * Returned by a native to suspend the script calling it, instead of blocking the thread.
+ * Only when the caller of the engine can resume it later, see ScriptContext.canSuspend().
+ * The script is resumed with the value the native call returns.
+ */
+public final class Suspension {
+
+    public static final Suspension AWAITING_ANSWER = new Suspension("awaiting the answer of the player", -1);
+
+    private final String reason;
+    private final long delay; // -1 if the script does not wait for the time to pass
+
+    private Suspension(String reason, long delay) {
+        this.reason = reason;
+        this.delay = delay;
+    }
+
+    /**
+     * The script waits for the given time, in ticks of the Scheduler.
+     */
+    public static Suspension delay(long ticks) {
+        return new Suspension("delayed for " + ticks + " ticks", Math.max(ticks, 0));
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public boolean isDelay() {
+        return delay >= 0;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    @Override
+    public String toString() {
+        return "Suspension{" + reason + "}";
+    }
+}
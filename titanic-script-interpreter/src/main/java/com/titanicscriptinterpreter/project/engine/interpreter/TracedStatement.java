@@ -0,0 +1,45 @@
+package com.titanicscriptinterpreter.project.engine.interpreter;
+
+import com.titanicscriptinterpreter.project.engine.statements.FunctionDeclarationStatement;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+
+/**
+ * Wraps a statement of a function while a ScriptHooks is attached to the Interpreter, in place of the statement.
+ */
+final class TracedStatement implements Statement {
+
+    private final Statement original;
+    private final FunctionDeclarationStatement function;
+
+    TracedStatement(Statement original, FunctionDeclarationStatement function) {
+        this.original = original;
+        this.function = function;
+    }
+
+    Statement getOriginal() {
+        return original;
+    }
+
+    FunctionDeclarationStatement getFunction() {
+        return function;
+    }
+
+    String getFunctionName() {
+        return function.getFunctionName();
+    }
+
+    @Override
+    public int getLine() {
+        return original.getLine();
+    }
+
+    @Override
+    public void setLine(int line) {
+        original.setLine(line);
+    }
+
+    @Override
+    public String toString() {
+        return "TracedStatement{" + original + "}";
+    }
+}
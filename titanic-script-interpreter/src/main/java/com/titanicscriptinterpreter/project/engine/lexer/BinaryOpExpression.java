@@ -1,9 +1,12 @@
 package com.titanicscriptinterpreter.project.engine.lexer;
 
+import com.titanicscriptinterpreter.project.engine.interpreter.SpecializedOperation;
+
 public class BinaryOpExpression implements Expression {
     private final Expression left;
     private final String operator;
     private final Expression right;
+    private SpecializedOperation specialization; // Set by the Interpreter in specializing mode
 
     public BinaryOpExpression(Expression left, String operator, Expression right) {
         this.left = left;
@@ -12,15 +15,23 @@ public class BinaryOpExpression implements Expression {
     }
 
     public Expression getLeft() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return left;
     }
 
     public Expression getRight() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return right;
     }
 
     public String getOperator() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return operator;
+    }
+
+    public SpecializedOperation getSpecialization() {
+        return specialization;
+    }
+
+    public void setSpecialization(SpecializedOperation specialization) {
+        this.specialization = specialization;
     }
 }
 
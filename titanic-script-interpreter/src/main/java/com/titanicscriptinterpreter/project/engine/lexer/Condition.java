@@ -1,10 +1,13 @@
 package com.titanicscriptinterpreter.project.engine.lexer;
 
+import com.titanicscriptinterpreter.project.engine.interpreter.SpecializedOperation;
+
 public class Condition implements Expression{
 
     private final Expression leftExpr;
     private final String operator;  // For instance: "="
     private final Expression rightExpr;
+    private SpecializedOperation specialization; // Set by the Interpreter in specializing mode
 
     public Condition(Expression leftExpr, String operator, Expression rightExpr) {
         this.leftExpr = leftExpr;
@@ -20,6 +23,14 @@ public class Condition implements Expression{
         return operator;
     }
 
+    public SpecializedOperation getSpecialization() {
+        return specialization;
+    }
+
+    public void setSpecialization(SpecializedOperation specialization) {
+        this.specialization = specialization;
+    }
+
     public Expression getRightExpr() {
         return rightExpr;
     }
@@ -0,0 +1,212 @@
+package com.titanicscriptinterpreter.project.engine.lexer;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.Operators;
+import com.titanicscriptinterpreter.project.engine.statements.AssignmentStatement;
+import com.titanicscriptinterpreter.project.engine.statements.FunctionCallStatement;
+import com.titanicscriptinterpreter.project.engine.statements.FunctionDeclarationStatement;
+import com.titanicscriptinterpreter.project.engine.statements.IfStatement;
+import com.titanicscriptinterpreter.project.engine.statements.LocalStatement;
+import com.titanicscriptinterpreter.project.engine.statements.ReturnStatement;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import com.titanicscriptinterpreter.project.engine.statements.SwitchStatement;
+import com.titanicscriptinterpreter.project.engine.statements.WhileStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates once, before running the script, the conditions made only of literals.
+ *
+ * An 'if' on such a condition is replaced by the branch taken, a 'while' that never loops is removed,
+ * and a 'switch' on a literal with literal cases is replaced by the matching case.
+ * A branch declaring a 'local' variable is never removed: the declaration decides where the variable lives.
+ */
+public class ConstantFolder {
+
+    private static final Object NOT_CONSTANT = new Object();
+
+    private ConstantFolder() {
+    }
+
+    public static List<Statement> fold(List<Statement> statements) {
+        List<Statement> folded = new ArrayList<>(statements.size());
+        for (Statement stmt : statements) {
+            foldInto(stmt, folded);
+        }
+        return folded;
+    }
+
+    private static void foldInto(Statement stmt, List<Statement> out) {
+        if (stmt instanceof IfStatement ifStatement) {
+            Condition condition = foldCondition(ifStatement.getCondition());
+            Object value = constantValue(condition);
+            if (value != NOT_CONSTANT) {
+                boolean isTrue = Operators.toBoolean(value);
+                List<Statement> dropped = isTrue ? ifStatement.getElseStatements() : ifStatement.getThenStatements();
+                if (!declaresLocal(dropped)) {
+                    out.addAll(fold(isTrue ? ifStatement.getThenStatements() : ifStatement.getElseStatements()));
+                    return;
+                }
+            }
+            out.add(withLine(new IfStatement(condition, fold(ifStatement.getThenStatements()), fold(ifStatement.getElseStatements())), stmt));
+        } else if (stmt instanceof WhileStatement whileStatement) {
+            Condition condition = foldCondition(whileStatement.getCondition());
+            Object value = constantValue(condition);
+            if (value != NOT_CONSTANT && !Operators.toBoolean(value) && !declaresLocal(whileStatement.getBody())) {
+                return;
+            }
+            out.add(withLine(new WhileStatement(condition, fold(whileStatement.getBody())), stmt));
+        } else if (stmt instanceof SwitchStatement switchStatement) {
+            foldSwitchInto(switchStatement, out);
+        } else if (stmt instanceof FunctionDeclarationStatement funcDecl) {
+            out.add(withLine(new FunctionDeclarationStatement(funcDecl.getFunctionName(), funcDecl.getParameters(),
+                    fold(funcDecl.getBody()), funcDecl.getCreationContext()), stmt));
+        } else if (stmt instanceof AssignmentStatement assignmentStatement) {
+            out.add(withLine(new AssignmentStatement(assignmentStatement.getVariableName(), foldExpression(assignmentStatement.getRightHandSide())), stmt));
+        } else if (stmt instanceof FunctionCallStatement functionCallStatement) {
+            out.add(withLine(new FunctionCallStatement(functionCallStatement.getFunctionName(), foldExpressions(functionCallStatement.getArguments())), stmt));
+        } else if (stmt instanceof ReturnStatement returnStatement) {
+            out.add(withLine(new ReturnStatement(foldExpression(returnStatement.getReturnValue())), stmt));
+        } else {
+            out.add(stmt);
+        }
+    }
+
+    private static void foldSwitchInto(SwitchStatement stmt, List<Statement> out) {
+        Expression switchExpr = foldExpression(stmt.getSwitchExpression());
+        List<CaseBlock> cases = new ArrayList<>(stmt.getCases().size());
+        boolean allLiterals = switchExpr instanceof LiteralExpression;
+        for (CaseBlock cb : stmt.getCases()) {
+            Expression caseValue = foldExpression(cb.getValue());
+            allLiterals &= caseValue instanceof LiteralExpression;
+            cases.add(new CaseBlock(caseValue, fold(cb.getStatements())));
+        }
+
+        if (allLiterals) {
+            Object switchValue = ((LiteralExpression) switchExpr).getValue();
+            CaseBlock matching = null;
+            boolean droppedLocal = false;
+            for (CaseBlock cb : cases) {
+                if (matching == null && Operators.equalsOperator(switchValue, ((LiteralExpression) cb.getValue()).getValue())) {
+                    matching = cb;
+                } else {
+                    droppedLocal |= declaresLocal(cb.getStatements());
+                }
+            }
+            if (!droppedLocal) {
+                if (matching != null) {
+                    out.addAll(matching.getStatements());
+                }
+                return;
+            }
+        }
+
+        out.add(withLine(new SwitchStatement(switchExpr, cases), stmt));
+    }
+
+    private static Statement withLine(Statement folded, Statement original) {
+        folded.setLine(original.getLine());
+        return folded;
+    }
+
+    private static List<Expression> foldExpressions(List<Expression> expressions) {
+        List<Expression> folded = new ArrayList<>(expressions.size());
+        for (Expression expr : expressions) {
+            folded.add(foldExpression(expr));
+        }
+        return folded;
+    }
+
+    /**
+     * A condition or operation on two literals becomes a boolean literal.
+     */
+    private static Expression foldExpression(Expression expr) {
+        if (expr instanceof Condition condition) {
+            Condition folded = foldCondition(condition);
+            Object value = constantValue(folded);
+            return (value == NOT_CONSTANT) ? folded : booleanLiteral(value);
+        } else if (expr instanceof BinaryOpExpression binaryOpExpression) {
+            Expression left = foldExpression(binaryOpExpression.getLeft());
+            Expression right = foldExpression(binaryOpExpression.getRight());
+            BinaryOpExpression folded = new BinaryOpExpression(left, binaryOpExpression.getOperator(), right);
+            Object value = constantValue(folded);
+            return (value == NOT_CONSTANT) ? folded : booleanLiteral(value);
+        } else if (expr instanceof FunctionCallExpression functionCallExpression) {
+            return new FunctionCallExpression(functionCallExpression.getFunctionName(), foldExpressions(functionCallExpression.getArguments()));
+        }
+        return expr;
+    }
+
+    private static Condition foldCondition(Condition cond) {
+        return new Condition(foldExpression(cond.getLeftExpr()), cond.getOperator(), foldExpression(cond.getRightExpr()));
+    }
+
+    /** Same operators as Interpreter.evaluateCondition, the unknown ones are false. */
+    private static Object constantValue(Condition cond) {
+        if (!(cond.getLeftExpr() instanceof LiteralExpression left) || !(cond.getRightExpr() instanceof LiteralExpression right)) {
+            return NOT_CONSTANT;
+        }
+
+        switch (cond.getOperator()) {
+            case "=":
+                return Operators.equalsOperator(left.getValue(), right.getValue());
+            case "!=":
+                return !Operators.equalsOperator(left.getValue(), right.getValue());
+            case ">":
+                return Operators.compareGreater(left.getValue(), right.getValue());
+            default:
+                return false;
+        }
+    }
+
+    /** Same operators as Interpreter.interpretBinaryOpExpression, the unsupported ones are left for it to report. */
+    private static Object constantValue(BinaryOpExpression binExpr) {
+        if (!(binExpr.getLeft() instanceof LiteralExpression left) || !(binExpr.getRight() instanceof LiteralExpression right)) {
+            return NOT_CONSTANT;
+        }
+
+        switch (binExpr.getOperator()) {
+            case "=":
+                return Operators.equalsOperator(left.getValue(), right.getValue());
+            case "!=":
+                return !Operators.equalsOperator(left.getValue(), right.getValue());
+            case ">":
+                return Operators.compareGreater(left.getValue(), right.getValue());
+            case "<":
+                return Operators.compareLess(left.getValue(), right.getValue());
+            case "&":
+                return Operators.toBoolean(left.getValue()) && Operators.toBoolean(right.getValue());
+            default:
+                return NOT_CONSTANT;
+        }
+    }
+
+    private static LiteralExpression booleanLiteral(Object value) {
+        return new LiteralExpression(TokenType.BOOLEAN, String.valueOf(value), value);
+    }
+
+    /**
+     * Nested function declarations have their own locals, they are not looked into.
+     */
+    private static boolean declaresLocal(List<Statement> statements) {
+        for (Statement stmt : statements) {
+            if (stmt instanceof LocalStatement) {
+                return true;
+            } else if (stmt instanceof IfStatement ifStatement) {
+                if (declaresLocal(ifStatement.getThenStatements()) || declaresLocal(ifStatement.getElseStatements())) {
+                    return true;
+                }
+            } else if (stmt instanceof WhileStatement whileStatement) {
+                if (declaresLocal(whileStatement.getBody())) {
+                    return true;
+                }
+            } else if (stmt instanceof SwitchStatement switchStatement) {
+                for (CaseBlock cb : switchStatement.getCases()) {
+                    if (declaresLocal(cb.getStatements())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
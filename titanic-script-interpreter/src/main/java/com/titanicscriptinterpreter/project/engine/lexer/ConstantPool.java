@@ -0,0 +1,40 @@
+package com.titanicscriptinterpreter.project.engine.lexer;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The literals of a script. The same literal written many times is a single LiteralExpression,
+ * and equal values (small integers, repeated strings...) are a single instance.
+ */
+public class ConstantPool {
+
+    private final Map<TokenType, Map<String, LiteralExpression>> literals = new EnumMap<>(TokenType.class);
+    private final Map<Object, Object> values = new HashMap<>();
+
+    public LiteralExpression literal(TokenType type, String text) {
+        Map<String, LiteralExpression> byText = literals.computeIfAbsent(type, t -> new HashMap<>());
+        LiteralExpression literal = byText.get(text);
+        if (literal == null) {
+            literal = new LiteralExpression(type, text, this.intern(LiteralExpression.decode(type, text)));
+            byText.put(text, literal);
+        }
+        return literal;
+    }
+
+    /**
+     * The shared instance equal to the given value.
+     */
+    public Object intern(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Object existing = values.putIfAbsent(value, value);
+        return (existing != null) ? existing : value;
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -1,10 +1,12 @@
 package com.titanicscriptinterpreter.project.engine.lexer;
 
+import com.titanicscriptinterpreter.project.engine.interpreter.CallTarget;
 import java.util.List;
 
 public class FunctionCallExpression implements Expression {
     private final String functionName;
     private final List<Expression> arguments;
+    private CallTarget target; // Set by the link phase of the Interpreter
 
     public FunctionCallExpression(String functionName, List<Expression> arguments) {
         this.functionName = functionName;
@@ -13,6 +15,8 @@ public class FunctionCallExpression implements Expression {
 
     public String getFunctionName() { return functionName; }
     public List<Expression> getArguments() { return arguments; }
+    public CallTarget getTarget() { return target; } // null if the expression was not linked
+    public void setTarget(CallTarget target) { this.target = target; }
 
     @Override
     public String toString() {
@@ -3,17 +3,49 @@ package com.titanicscriptinterpreter.project.engine.lexer;
 public class LiteralExpression implements Expression {
     private final TokenType type;
     private final String literal;
+    private final Object value; // Decoded once, see ConstantPool to share it
 
     public LiteralExpression(TokenType type, String literal) {
+        this(type, literal, decode(type, literal));
+    }
+
+    public LiteralExpression(TokenType type, String literal, Object value) {
         this.type = type;
         this.literal = literal;
+        this.value = value;
     }
 
     public TokenType getLiteralType() { return type; }
     public String getLiteral() { return literal; }
 
+    /**
+     * The runtime value of the literal: Integer, Double, String or Boolean.
+     */
+    public Object getValue() { return value; }
+
+    /** @TODO probably incomplete */
+    public static Object decode(TokenType type, String literal) {
+        switch (type) {
+            case NUMBER:
+                if (literal.contains(".")) {
+                    return Double.parseDouble(literal);
+                }
+                try {
+                    return Integer.parseInt(literal);
+                } catch (NumberFormatException e) {
+                    // Too big for an int, better than failing on a literal that may never be evaluated
+                    return Double.parseDouble(literal);
+                }
+            case STRING:
+                return literal;
+            case BOOLEAN:
+                return Boolean.parseBoolean(literal);
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         return "LiteralExpression{" + type + "=" + literal + "}";
     }
-}
\ No newline at end of file
+}
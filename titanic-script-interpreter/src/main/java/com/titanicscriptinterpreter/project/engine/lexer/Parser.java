@@ -12,18 +12,37 @@ import com.titanicscriptinterpreter.project.engine.statements.ReturnStatement;
 import com.titanicscriptinterpreter.project.engine.statements.SwitchStatement;
 import com.titanicscriptinterpreter.project.engine.statements.WhileStatement;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
  * SIDE NOTE: remember that using the advance() function allows you to see what the next instruction is.
+ *
+ * The tokens are pulled from a TokenSource when needed. We never look further than one token after the current one,
+ * so the parser only keeps a window of three tokens: the previous, the current and the next one.
  */
 public class Parser {
 
-    private final List<Token> tokens;
-    private int current = 0;  // pointer to the current token
+    private final TokenSource source;
+    private Token previousToken;
+    private Token currentToken;
+    private Token nextToken; // Only pulled when lookAhead(1) asks for it
+    private boolean hasErrors = false;
+    private final ConstantPool constantPool = new ConstantPool();
+
+    public Parser(TokenSource source) {
+        this.source = source;
+    }
 
     public Parser(List<Token> tokens) {
-        this.tokens = tokens;
+        this(fromList(tokens));
+    }
+
+    private static TokenSource fromList(List<Token> tokens) {
+        Iterator<Token> iterator = tokens.iterator();
+        // If the list has no EOF token, we declare one.
+        Token eof = new Token(TokenType.EOF, "", tokens.size());
+        return () -> iterator.hasNext() ? iterator.next() : eof;
     }
 
     /**
@@ -32,21 +51,55 @@ public class Parser {
     public List<Statement> parse() {
         List<Statement> statements = new ArrayList<>();
 
+        Statement stmt;
+        while ((stmt = parseNext()) != null) {
+            statements.add(stmt);
+        }
+
+        return statements;
+    }
+
+    /**
+     * Parses the next top-level statement, for instance a whole function declaration.
+     * Lets the caller handle the script one statement at a time instead of keeping all of them.
+     *
+     * @return null once the end of the script is reached
+     */
+    public Statement parseNext() {
         while (!isAtEnd()) {
             // parse one statement at a time
             Statement stmt = parseStatement();
             if (stmt != null) {
-                statements.add(stmt);
+                return stmt;
             }
         }
 
-        return statements;
+        return null;
     }
 
     /**
-     * Determine which kind of statement we have to process.
+     * True if an error was reported while parsing, the statements are then incomplete.
+     */
+    public boolean hasErrors() {
+        return hasErrors;
+    }
+
+    /**
+     * Parses a statement and keeps the line it starts on.
      */
     private Statement parseStatement() {
+        int line = peek().getLine();
+        Statement stmt = parseAnyStatement();
+        if (stmt != null) {
+            stmt.setLine(line);
+        }
+        return stmt;
+    }
+
+    /**
+     * Determine which kind of statement we have to process.
+     */
+    private Statement parseAnyStatement() {
         // Look at the current token
         Token currentToken = peek();
 
@@ -100,13 +153,15 @@ public class Parser {
 
     private Statement parseReturnStatement() {
         // consume the 'return' keyword
-        advance();
+        Token returnToken = advance();
+
+        // A return without value: the next token is already the next statement
+        if (isAtEnd() || peek().getLine() != returnToken.getLine()) {
+            return new ReturnStatement(null);
+        }
 
         // parse an expression for the returned value
         Expression expr = parseExpression();
-        if (expr == null) {
-            // Return without value. I handle that in the Interpreter. But is it the good approach?
-        }
 
         return new ReturnStatement(expr);
     }
@@ -494,7 +549,7 @@ public class Parser {
                 || tk.getType() == TokenType.NUMBER
                 || tk.getType() == TokenType.BOOLEAN) {
             advance();
-            return new LiteralExpression(tk.getType(), tk.getText());
+            return constantPool.literal(tk.getType(), tk.getText());
         }
 
         error("Unsupported expression format", tk.getLine());
@@ -592,11 +647,10 @@ public class Parser {
      * Returns the current token WITHOUT consuming it.
      */
     private Token peek() {
-        if (current >= tokens.size()) {
-            // If reaching the end of the file, we declare a EOF token.
-            return new Token(TokenType.EOF, "", tokens.size());
+        if (currentToken == null) {
+            currentToken = source.next();
         }
-        return tokens.get(current);
+        return currentToken;
     }
 
     /**
@@ -604,7 +658,9 @@ public class Parser {
      */
     private Token advance() {
         if (!isAtEnd()) {
-            current++;
+            previousToken = currentToken;
+            currentToken = nextToken;
+            nextToken = null;
         }
         return previous();
     }
@@ -636,10 +692,11 @@ public class Parser {
      * Returns the previous consumed token.
      */
     private Token previous() {
-        return tokens.get(current - 1);
+        return previousToken;
     }
 
     private void error(String message, int line) {
+        hasErrors = true;
         System.err.println("[Line " + line + "] Error: " + message);
     }
 
@@ -659,11 +716,19 @@ public class Parser {
         return t.getType() == TokenType.SYMBOL && t.getText().equals(symbol);
     }
 
+    /**
+     * Only one token of look ahead is supported, that is the size of the window.
+     */
     private Token lookAhead(int offset) {
-        int index = current + offset;
-        if (index >= tokens.size()) {
+        if (offset != 1) {
+            throw new IllegalArgumentException("Cannot look " + offset + " tokens ahead");
+        }
+        if (peek().getType() == TokenType.EOF) {
             return null;
         }
-        return tokens.get(index);
+        if (nextToken == null) {
+            nextToken = source.next();
+        }
+        return nextToken;
     }
 }
@@ -1,25 +1,48 @@
 package com.titanicscriptinterpreter.project.engine.lexer;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 
 /**
- * Open the file and read it line by line to produce a list of tokens.
+ * Read the script line by line to produce tokens.
+ *
+ * The lines are read on demand: the Parser pulls the tokens with next(), so only the current line is in memory.
+ * lexAll() is still there to get all the tokens at once.
  */
-public class ScriptLexer {
+public class ScriptLexer implements TokenSource, Closeable {
 
-    private final List<String> lines;
+    private final Iterator<String> lines;
+    private final Closeable reader; // null when lexing lines already in memory
+    private final Deque<Token> pendingTokens = new ArrayDeque<>(); // The rest of the current line
     private int currentLine = 0;
+    private Token eofToken;
 
     public ScriptLexer(String scriptFilePath) throws IOException {
-        /**
-         * @TODO improve because we load the full file into memory
-         */
-        Path scriptPath = Path.of(scriptFilePath);
-        this.lines = Files.readAllLines(scriptPath);
+        this(Files.newBufferedReader(Path.of(scriptFilePath)));
+    }
+
+    /**
+     * Stream the script from a reader, which is closed once the end is reached.
+     */
+    public ScriptLexer(BufferedReader reader) {
+        this.lines = reader.lines().iterator();
+        this.reader = reader;
+    }
+
+    /**
+     * Lex a script already read, for instance by the ScriptLoader.
+     */
+    public ScriptLexer(List<String> lines) {
+        this.lines = lines.iterator();
+        this.reader = null;
     }
 
     /**
@@ -28,10 +51,26 @@ public class ScriptLexer {
      */
     public List<Token> lexAll() {
         List<Token> tokens = new ArrayList<>();
-        while (currentLine < lines.size()) {
-            String lineText = lines.get(currentLine);
+        Token token;
+        do {
+            token = this.next();
+            tokens.add(token);
+        } while (token.getType() != TokenType.EOF);
+
+        return tokens;
+    }
+
+    @Override
+    public Token next() {
+        // Lines without tokens (comments, blank) are skipped
+        while (pendingTokens.isEmpty()) {
+            if (!lines.hasNext()) {
+                return this.endOfFile();
+            }
+
+            String lineText = lines.next();
             List<Token> currentTokens = tokenizeLine(lineText, currentLine + 1);
-            tokens.addAll(currentTokens);
+            pendingTokens.addAll(currentTokens);
             
             // Dirty, but I did not find any other way to "stop" parsing the next line when not required
             if (
@@ -41,15 +80,32 @@ public class ScriptLexer {
                     || currentTokens.get(0).getText().equals("local")
                 )
             ) {
-                tokens.add(new Token(TokenType.NEWLINE, "", currentLine + 1));
+                pendingTokens.add(new Token(TokenType.NEWLINE, "", currentLine + 1));
             }
 
             currentLine++;
         }
-        
-        // Add an EOF token
-        tokens.add(new Token(TokenType.EOF, "", currentLine + 1));
-        return tokens;
+
+        return pendingTokens.poll();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    private Token endOfFile() {
+        if (eofToken == null) {
+            eofToken = new Token(TokenType.EOF, "", currentLine + 1);
+            try {
+                this.close();
+            } catch (IOException e) {
+                // Everything was read already
+            }
+        }
+        return eofToken;
     }
 
     /**
@@ -0,0 +1,12 @@
+package com.titanicscriptinterpreter.project.engine.lexer;
+
+/**
+ * Where the Parser pulls its tokens from, one at a time.
+ */
+public interface TokenSource {
+
+    /**
+     * Consumes and returns the next token. Once the end is reached, returns an EOF token on every call.
+     */
+    Token next();
+}
@@ -1,24 +1,135 @@
 package com.titanicscriptinterpreter.project.engine.lexer;
 
-public class Value {
-    private final ValueType type;
-    private final String literal;
+import com.titanicscriptinterpreter.project.engine.interpreter.EmptyFunctionResult;
+import com.titanicscriptinterpreter.project.engine.interpreter.Operators;
 
-    public Value(ValueType type, String literal) {
-        this.type = type;
-        this.literal = literal;
+/**
+ * Operations on unboxed script values: a type tag (see ValueType), a long payload for the numbers and booleans,
+ * and a reference. The reference is the Java object of the value when there is one, so that converting a value
+ * that came in as an object back to an object does not allocate.
+ *
+ * The results are always the same as Operators on the Java objects.
+ */
+public final class Value {
+
+    private Value() {
+    }
+
+    public static byte tagOf(Object value) {
+        if (value == null) {
+            return ValueType.NULL;
+        } else if (value instanceof Integer) {
+            return ValueType.INT;
+        } else if (value instanceof String) {
+            return ValueType.STRING;
+        } else if (value instanceof Boolean) {
+            return ValueType.BOOLEAN;
+        } else if (value instanceof Double) {
+            return ValueType.DOUBLE;
+        } else if (value instanceof EmptyFunctionResult) {
+            return ValueType.EMPTY;
+        }
+        return ValueType.OBJECT;
+    }
+
+    public static long payloadOf(Object value) {
+        if (value instanceof Integer i) {
+            return i;
+        } else if (value instanceof Boolean b) {
+            return b ? 1 : 0;
+        } else if (value instanceof Double d) {
+            return Double.doubleToLongBits(d);
+        }
+        return 0;
+    }
+
+    /**
+     * Back to a Java object, at the boundary with the embedding code and the natives.
+     */
+    public static Object toObject(byte tag, long payload, Object ref) {
+        if (ref != null || tag == ValueType.NULL) {
+            return ref;
+        }
+        switch (tag) {
+            case ValueType.INT:
+                return (int) payload;
+            case ValueType.BOOLEAN:
+                return payload != 0;
+            case ValueType.DOUBLE:
+                return Double.longBitsToDouble(payload);
+            case ValueType.EMPTY:
+                return EmptyFunctionResult.INSTANCE;
+            default:
+                return null;
+        }
+    }
+
+    public static boolean equals(byte leftTag, long leftPayload, Object leftRef, byte rightTag, long rightPayload, Object rightRef) {
+        if (leftTag == ValueType.OBJECT || rightTag == ValueType.OBJECT) {
+            return Operators.equalsOperator(toObject(leftTag, leftPayload, leftRef), toObject(rightTag, rightPayload, rightRef));
+        }
+        if (leftTag != rightTag) {
+            return false; // Different classes, like Integer.equals(Double)
+        }
+        switch (leftTag) {
+            case ValueType.INT:
+            case ValueType.BOOLEAN:
+            case ValueType.DOUBLE: // doubleToLongBits, like Double.equals
+                return leftPayload == rightPayload;
+            case ValueType.STRING:
+                return leftRef.equals(rightRef);
+            default: // NULL, or the EMPTY singleton
+                return true;
+        }
+    }
+
+    public static boolean greater(byte leftTag, long leftPayload, Object leftRef, byte rightTag, long rightPayload, Object rightRef) {
+        if (leftTag == ValueType.INT && rightTag == ValueType.INT) {
+            return leftPayload > rightPayload;
+        }
+        if (isNumber(leftTag) && isNumber(rightTag)) {
+            return toDouble(leftTag, leftPayload) > toDouble(rightTag, rightPayload);
+        }
+        if (leftTag == ValueType.OBJECT || rightTag == ValueType.OBJECT) {
+            return Operators.compareGreater(toObject(leftTag, leftPayload, leftRef), toObject(rightTag, rightPayload, rightRef));
+        }
+        return false;
+    }
+
+    public static boolean less(byte leftTag, long leftPayload, Object leftRef, byte rightTag, long rightPayload, Object rightRef) {
+        if (leftTag == ValueType.INT && rightTag == ValueType.INT) {
+            return leftPayload < rightPayload;
+        }
+        if (isNumber(leftTag) && isNumber(rightTag)) {
+            return toDouble(leftTag, leftPayload) < toDouble(rightTag, rightPayload);
+        }
+        if (leftTag == ValueType.OBJECT || rightTag == ValueType.OBJECT) {
+            return Operators.compareLess(toObject(leftTag, leftPayload, leftRef), toObject(rightTag, rightPayload, rightRef));
+        }
+        return false;
     }
 
-    public ValueType getType() {
-        return type;
+    public static boolean toBoolean(byte tag, long payload, Object ref) {
+        switch (tag) {
+            case ValueType.NULL:
+                return false;
+            case ValueType.INT:
+            case ValueType.BOOLEAN:
+                return payload != 0;
+            case ValueType.DOUBLE:
+                return Double.longBitsToDouble(payload) != 0.0;
+            case ValueType.OBJECT:
+                return Operators.toBoolean(ref);
+            default: // STRING, EMPTY
+                return true;
+        }
     }
 
-    public String getLiteral() {
-        return literal;
+    private static boolean isNumber(byte tag) {
+        return tag == ValueType.INT || tag == ValueType.DOUBLE;
     }
 
-    @Override
-    public String toString() {
-        return literal + "(" + type + ")";
+    private static double toDouble(byte tag, long payload) {
+        return (tag == ValueType.INT) ? payload : Double.longBitsToDouble(payload);
     }
 }
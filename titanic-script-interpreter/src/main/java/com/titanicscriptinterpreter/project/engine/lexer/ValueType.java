@@ -1,5 +1,19 @@
 package com.titanicscriptinterpreter.project.engine.lexer;
 
-public enum ValueType {
-    STRING, NUMBER, BOOLEAN, IDENTIFIER
+/**
+ * Type tags of the script values, when they are stored unboxed: a tag, a long payload and a reference (see Value).
+ * NULL is zero so that new tag arrays are full of null values.
+ */
+public final class ValueType {
+
+    public static final byte NULL = 0;
+    public static final byte INT = 1;     // payload: the int value
+    public static final byte DOUBLE = 2;  // payload: Double.doubleToLongBits
+    public static final byte BOOLEAN = 3; // payload: 1 or 0
+    public static final byte STRING = 4;  // reference: the String
+    public static final byte EMPTY = 5;   // EmptyFunctionResult, the result of the natives returning nothing
+    public static final byte OBJECT = 6;  // reference: any other object a native returned
+
+    private ValueType() {
+    }
 }
@@ -0,0 +1,42 @@
+package com.titanicscriptinterpreter.project.engine.loader;
+
+/**
+ * Layout of the binary AST cache files:
+ *
+ * magic, format version, SHA-256 of the script source (32 bytes), then the statements.
+ * Each node is a tag byte followed by its fields, each statement is preceded by its line. Counts and indexes are varints.
+ * Strings are stored once: a reference is an index in the strings already read,
+ * the next free index meaning that a new string (length + UTF-8 bytes) follows.
+ *
+ * Bump VERSION for any change of this layout, of the AST classes or of what the Parser produces, old cache files are then ignored.
+ */
+final class AstFormat {
+
+    static final int MAGIC = 0x54534143; // "TSAC"
+    static final int VERSION = 3; // 2: a bare 'return' no longer takes the next line as its value, 3: the line of each statement
+    static final int HASH_LENGTH = 32;
+
+    static final byte NULL = 0;
+
+    // Statements
+    static final byte IF = 1;
+    static final byte FUNCTION_DECLARATION = 2;
+    static final byte FUNCTION_CALL_STATEMENT = 3;
+    static final byte GLOBAL = 4;
+    static final byte ASSIGNMENT = 5;
+    static final byte EXIT_CODE = 6;
+    static final byte SWITCH = 7;
+    static final byte LOCAL = 8;
+    static final byte WHILE = 9;
+    static final byte RETURN = 10;
+
+    // Expressions
+    static final byte LITERAL = 20;
+    static final byte VARIABLE = 21;
+    static final byte FUNCTION_CALL_EXPRESSION = 22;
+    static final byte BINARY_OP = 23;
+    static final byte CONDITION = 24;
+
+    private AstFormat() {
+    }
+}
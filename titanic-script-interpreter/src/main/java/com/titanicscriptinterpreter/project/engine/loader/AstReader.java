@@ -0,0 +1,197 @@
+package com.titanicscriptinterpreter.project.engine.loader;
+
+import com.titanicscriptinterpreter.project.engine.lexer.BinaryOpExpression;
+import com.titanicscriptinterpreter.project.engine.lexer.CaseBlock;
+import com.titanicscriptinterpreter.project.engine.lexer.Condition;
+import com.titanicscriptinterpreter.project.engine.lexer.ConstantPool;
+import com.titanicscriptinterpreter.project.engine.lexer.Expression;
+import com.titanicscriptinterpreter.project.engine.lexer.FunctionCallExpression;
+import com.titanicscriptinterpreter.project.engine.lexer.TokenType;
+import com.titanicscriptinterpreter.project.engine.lexer.VariableExpression;
+import com.titanicscriptinterpreter.project.engine.statements.AssignmentStatement;
+import com.titanicscriptinterpreter.project.engine.statements.ExitCodeStatement;
+import com.titanicscriptinterpreter.project.engine.statements.FunctionCallStatement;
+import com.titanicscriptinterpreter.project.engine.statements.FunctionDeclarationStatement;
+import com.titanicscriptinterpreter.project.engine.statements.GlobalStatement;
+import com.titanicscriptinterpreter.project.engine.statements.IfStatement;
+import com.titanicscriptinterpreter.project.engine.statements.LocalStatement;
+import com.titanicscriptinterpreter.project.engine.statements.ReturnStatement;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import com.titanicscriptinterpreter.project.engine.statements.SwitchStatement;
+import com.titanicscriptinterpreter.project.engine.statements.WhileStatement;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads statements back from a cache file mapped in memory, see AstFormat.
+ */
+class AstReader {
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private final ByteBuffer in;
+    private final List<String> strings = new ArrayList<>();
+    private final ConstantPool constantPool = new ConstantPool();
+
+    AstReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    /**
+     * @return false if the buffer is not a cache file of the current format, or was made from another source
+     */
+    boolean checkHeader(byte[] sourceHash) {
+        if (in.remaining() < 8 + AstFormat.HASH_LENGTH) {
+            return false;
+        }
+        if (in.getInt() != AstFormat.MAGIC || in.getInt() != AstFormat.VERSION) {
+            return false;
+        }
+        byte[] cachedHash = new byte[AstFormat.HASH_LENGTH];
+        in.get(cachedHash);
+
+        return Arrays.equals(cachedHash, sourceHash);
+    }
+
+    List<Statement> readStatements() throws IOException {
+        int count = this.readVarInt();
+        List<Statement> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int line = this.readVarInt();
+            Statement stmt = this.readStatement();
+            stmt.setLine(line);
+            statements.add(stmt);
+        }
+        return statements;
+    }
+
+    private Statement readStatement() throws IOException {
+        byte tag = in.get();
+        switch (tag) {
+            case AstFormat.IF: {
+                Condition condition = (Condition) this.readExpression();
+                List<Statement> thenStatements = this.readStatements();
+                List<Statement> elseStatements = this.readStatements();
+                return new IfStatement(condition, thenStatements, elseStatements);
+            }
+            case AstFormat.FUNCTION_DECLARATION: {
+                String functionName = this.readString();
+                List<String> parameters = this.readStrings();
+                return new FunctionDeclarationStatement(functionName, parameters, this.readStatements());
+            }
+            case AstFormat.FUNCTION_CALL_STATEMENT: {
+                String functionName = this.readString();
+                return new FunctionCallStatement(functionName, this.readExpressions());
+            }
+            case AstFormat.GLOBAL:
+                return new GlobalStatement(this.readStrings());
+            case AstFormat.ASSIGNMENT: {
+                String variableName = this.readString();
+                return new AssignmentStatement(variableName, this.readExpression());
+            }
+            case AstFormat.EXIT_CODE:
+                return new ExitCodeStatement();
+            case AstFormat.SWITCH: {
+                Expression switchExpression = this.readExpression();
+                int caseCount = this.readVarInt();
+                List<CaseBlock> cases = new ArrayList<>(caseCount);
+                for (int i = 0; i < caseCount; i++) {
+                    Expression value = this.readExpression();
+                    cases.add(new CaseBlock(value, this.readStatements()));
+                }
+                return new SwitchStatement(switchExpression, cases);
+            }
+            case AstFormat.LOCAL:
+                return new LocalStatement(this.readStrings());
+            case AstFormat.WHILE: {
+                Condition condition = (Condition) this.readExpression();
+                return new WhileStatement(condition, this.readStatements());
+            }
+            case AstFormat.RETURN:
+                return new ReturnStatement(this.readExpression());
+            default:
+                throw new IOException("Corrupted cache: unknown statement tag " + tag);
+        }
+    }
+
+    private List<Expression> readExpressions() throws IOException {
+        int count = this.readVarInt();
+        List<Expression> expressions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            expressions.add(this.readExpression());
+        }
+        return expressions;
+    }
+
+    private Expression readExpression() throws IOException {
+        byte tag = in.get();
+        switch (tag) {
+            case AstFormat.NULL:
+                return null;
+            case AstFormat.LITERAL: {
+                TokenType type = TOKEN_TYPES[in.get()];
+                return constantPool.literal(type, this.readString());
+            }
+            case AstFormat.VARIABLE:
+                return new VariableExpression(this.readString());
+            case AstFormat.FUNCTION_CALL_EXPRESSION: {
+                String functionName = this.readString();
+                return new FunctionCallExpression(functionName, this.readExpressions());
+            }
+            case AstFormat.BINARY_OP: {
+                Expression left = this.readExpression();
+                String operator = this.readString();
+                return new BinaryOpExpression(left, operator, this.readExpression());
+            }
+            case AstFormat.CONDITION: {
+                Expression left = this.readExpression();
+                String operator = this.readString();
+                return new Condition(left, operator, this.readExpression());
+            }
+            default:
+                throw new IOException("Corrupted cache: unknown expression tag " + tag);
+        }
+    }
+
+    private List<String> readStrings() throws IOException {
+        int count = this.readVarInt();
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(this.readString());
+        }
+        return result;
+    }
+
+    private String readString() throws IOException {
+        int index = this.readVarInt();
+        if (index < strings.size()) {
+            return strings.get(index);
+        }
+        if (index != strings.size()) {
+            throw new IOException("Corrupted cache: string index " + index + " out of order");
+        }
+
+        int length = this.readVarInt();
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        String s = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(s);
+        return s;
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,169 @@
+package com.titanicscriptinterpreter.project.engine.loader;
+
+import com.titanicscriptinterpreter.project.engine.lexer.BinaryOpExpression;
+import com.titanicscriptinterpreter.project.engine.lexer.CaseBlock;
+import com.titanicscriptinterpreter.project.engine.lexer.Condition;
+import com.titanicscriptinterpreter.project.engine.lexer.Expression;
+import com.titanicscriptinterpreter.project.engine.lexer.FunctionCallExpression;
+import com.titanicscriptinterpreter.project.engine.lexer.LiteralExpression;
+import com.titanicscriptinterpreter.project.engine.lexer.VariableExpression;
+import com.titanicscriptinterpreter.project.engine.statements.AssignmentStatement;
+import com.titanicscriptinterpreter.project.engine.statements.ExitCodeStatement;
+import com.titanicscriptinterpreter.project.engine.statements.FunctionCallStatement;
+import com.titanicscriptinterpreter.project.engine.statements.FunctionDeclarationStatement;
+import com.titanicscriptinterpreter.project.engine.statements.GlobalStatement;
+import com.titanicscriptinterpreter.project.engine.statements.IfStatement;
+import com.titanicscriptinterpreter.project.engine.statements.LocalStatement;
+import com.titanicscriptinterpreter.project.engine.statements.ReturnStatement;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import com.titanicscriptinterpreter.project.engine.statements.SwitchStatement;
+import com.titanicscriptinterpreter.project.engine.statements.WhileStatement;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes parsed statements in the cache format described in AstFormat.
+ */
+class AstWriter {
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+
+    AstWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    void write(byte[] sourceHash, List<Statement> statements) throws IOException {
+        out.writeInt(AstFormat.MAGIC);
+        out.writeInt(AstFormat.VERSION);
+        out.write(sourceHash);
+        this.writeStatements(statements);
+        out.flush();
+    }
+
+    private void writeStatements(List<Statement> statements) throws IOException {
+        this.writeVarInt(statements.size());
+        for (Statement stmt : statements) {
+            this.writeVarInt(stmt.getLine());
+            this.writeStatement(stmt);
+        }
+    }
+
+    private void writeStatement(Statement stmt) throws IOException {
+        if (stmt instanceof IfStatement ifStatement) {
+            out.writeByte(AstFormat.IF);
+            this.writeExpression(ifStatement.getCondition());
+            this.writeStatements(ifStatement.getThenStatements());
+            this.writeStatements(ifStatement.getElseStatements());
+        } else if (stmt instanceof FunctionDeclarationStatement functionDeclarationStatement) {
+            out.writeByte(AstFormat.FUNCTION_DECLARATION);
+            this.writeString(functionDeclarationStatement.getFunctionName());
+            this.writeStrings(functionDeclarationStatement.getParameters());
+            this.writeStatements(functionDeclarationStatement.getBody());
+        } else if (stmt instanceof FunctionCallStatement functionCallStatement) {
+            out.writeByte(AstFormat.FUNCTION_CALL_STATEMENT);
+            this.writeString(functionCallStatement.getFunctionName());
+            this.writeExpressions(functionCallStatement.getArguments());
+        } else if (stmt instanceof GlobalStatement globalStatement) {
+            out.writeByte(AstFormat.GLOBAL);
+            this.writeStrings(globalStatement.getVariableNames());
+        } else if (stmt instanceof AssignmentStatement assignmentStatement) {
+            out.writeByte(AstFormat.ASSIGNMENT);
+            this.writeString(assignmentStatement.getVariableName());
+            this.writeExpression(assignmentStatement.getRightHandSide());
+        } else if (stmt instanceof ExitCodeStatement) {
+            out.writeByte(AstFormat.EXIT_CODE);
+        } else if (stmt instanceof SwitchStatement switchStatement) {
+            out.writeByte(AstFormat.SWITCH);
+            this.writeExpression(switchStatement.getSwitchExpression());
+            this.writeVarInt(switchStatement.getCases().size());
+            for (CaseBlock cb : switchStatement.getCases()) {
+                this.writeExpression(cb.getValue());
+                this.writeStatements(cb.getStatements());
+            }
+        } else if (stmt instanceof LocalStatement localStatement) {
+            out.writeByte(AstFormat.LOCAL);
+            this.writeStrings(localStatement.getVariableNames());
+        } else if (stmt instanceof WhileStatement whileStatement) {
+            out.writeByte(AstFormat.WHILE);
+            this.writeExpression(whileStatement.getCondition());
+            this.writeStatements(whileStatement.getBody());
+        } else if (stmt instanceof ReturnStatement returnStatement) {
+            out.writeByte(AstFormat.RETURN);
+            this.writeExpression(returnStatement.getReturnValue());
+        } else {
+            throw new IOException("Cannot cache unknown statement: " + stmt);
+        }
+    }
+
+    private void writeExpressions(List<Expression> expressions) throws IOException {
+        this.writeVarInt(expressions.size());
+        for (Expression expr : expressions) {
+            this.writeExpression(expr);
+        }
+    }
+
+    private void writeExpression(Expression expr) throws IOException {
+        if (expr == null) {
+            out.writeByte(AstFormat.NULL);
+        } else if (expr instanceof LiteralExpression literalExpression) {
+            out.writeByte(AstFormat.LITERAL);
+            out.writeByte(literalExpression.getLiteralType().ordinal());
+            this.writeString(literalExpression.getLiteral());
+        } else if (expr instanceof VariableExpression variableExpression) {
+            out.writeByte(AstFormat.VARIABLE);
+            this.writeString(variableExpression.getName());
+        } else if (expr instanceof FunctionCallExpression functionCallExpression) {
+            out.writeByte(AstFormat.FUNCTION_CALL_EXPRESSION);
+            this.writeString(functionCallExpression.getFunctionName());
+            this.writeExpressions(functionCallExpression.getArguments());
+        } else if (expr instanceof BinaryOpExpression binaryOpExpression) {
+            out.writeByte(AstFormat.BINARY_OP);
+            this.writeExpression(binaryOpExpression.getLeft());
+            this.writeString(binaryOpExpression.getOperator());
+            this.writeExpression(binaryOpExpression.getRight());
+        } else if (expr instanceof Condition condition) {
+            out.writeByte(AstFormat.CONDITION);
+            this.writeExpression(condition.getLeftExpr());
+            this.writeString(condition.getOperator());
+            this.writeExpression(condition.getRightExpr());
+        } else {
+            throw new IOException("Cannot cache unknown expression: " + expr);
+        }
+    }
+
+    private void writeStrings(List<String> strings) throws IOException {
+        this.writeVarInt(strings.size());
+        for (String s : strings) {
+            this.writeString(s);
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        Integer index = stringIndexes.get(s);
+        if (index != null) {
+            this.writeVarInt(index);
+            return;
+        }
+
+        // First time we see it: the next free index, then the content
+        this.writeVarInt(stringIndexes.size());
+        stringIndexes.put(s, stringIndexes.size());
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        this.writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,48 @@
+package com.titanicscriptinterpreter.project.engine.loader;
+
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The statements of a script file, and how they were obtained.
+ */
+public class LoadedScript {
+
+    private final Path path;
+    private final List<Statement> statements;
+    private final boolean fromCache;
+    private final long loadNanos;
+
+    public LoadedScript(Path path, List<Statement> statements, boolean fromCache, long loadNanos) {
+        this.path = path;
+        this.statements = statements;
+        this.fromCache = fromCache;
+        this.loadNanos = loadNanos;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public List<Statement> getStatements() {
+        return statements;
+    }
+
+    /**
+     * True if lexing and parsing were skipped thanks to the binary cache.
+     */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadedScript{" + path + ", " + statements.size() + " statements"
+                + (fromCache ? ", from cache" : "") + ", " + (loadNanos / 1000) + " us}";
+    }
+}
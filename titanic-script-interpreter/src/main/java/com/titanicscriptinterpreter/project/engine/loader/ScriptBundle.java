@@ -0,0 +1,76 @@
+package com.titanicscriptinterpreter.project.engine.loader;
+
+import com.titanicscriptinterpreter.project.engine.statements.FunctionDeclarationStatement;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Several scripts loaded together, typically one per puppet, with the registry of all the functions they declare.
+ */
+public class ScriptBundle {
+
+    private final List<LoadedScript> scripts;
+    private final Map<String, FunctionDeclarationStatement> functions;
+    private final long loadNanos;
+
+    /**
+     * @throws ScriptLoadException if a function name is declared more than once
+     */
+    public ScriptBundle(List<LoadedScript> scripts, long loadNanos) {
+        this.scripts = Collections.unmodifiableList(scripts);
+        this.loadNanos = loadNanos;
+
+        Map<String, FunctionDeclarationStatement> registry = new LinkedHashMap<>();
+        Map<String, LoadedScript> declaredIn = new HashMap<>();
+        List<String> duplicates = new ArrayList<>();
+        for (LoadedScript script : scripts) {
+            for (Statement stmt : script.getStatements()) {
+                if (stmt instanceof FunctionDeclarationStatement funcDecl) {
+                    String funcName = funcDecl.getFunctionName();
+                    LoadedScript first = declaredIn.putIfAbsent(funcName, script);
+                    if (first != null) {
+                        duplicates.add("'" + funcName + "' in " + first.getPath() + " and " + script.getPath());
+                    } else {
+                        registry.put(funcName, funcDecl);
+                    }
+                }
+            }
+        }
+
+        if (!duplicates.isEmpty()) {
+            throw new ScriptLoadException("Functions declared more than once: " + String.join(", ", duplicates));
+        }
+        this.functions = Collections.unmodifiableMap(registry);
+    }
+
+    public List<LoadedScript> getScripts() {
+        return scripts;
+    }
+
+    public Map<String, FunctionDeclarationStatement> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * The statements of all the scripts, in the order of the scripts.
+     */
+    public List<Statement> getStatements() {
+        List<Statement> statements = new ArrayList<>();
+        for (LoadedScript script : scripts) {
+            statements.addAll(script.getStatements());
+        }
+        return statements;
+    }
+
+    /**
+     * Wall-clock time of the whole load. Each script has its own time too.
+     */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+}
@@ -0,0 +1,117 @@
+package com.titanicscriptinterpreter.project.engine.loader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads many scripts at once, lexing and parsing them in parallel on a work-stealing pool.
+ */
+public class ScriptDirectoryLoader {
+
+    public static final String SCRIPT_EXTENSION = ".txt";
+
+    private final ScriptLoader scriptLoader;
+    private final ForkJoinPool pool;
+
+    public ScriptDirectoryLoader(ScriptLoader scriptLoader) {
+        this(scriptLoader, ForkJoinPool.commonPool());
+    }
+
+    public ScriptDirectoryLoader(ScriptLoader scriptLoader, ForkJoinPool pool) {
+        this.scriptLoader = scriptLoader;
+        this.pool = pool;
+    }
+
+    /**
+     * Every script file of the directory (not the sub-directories), sorted by name.
+     */
+    public ScriptBundle loadDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> scriptPaths = files
+                    .filter(path -> Files.isRegularFile(path) && path.getFileName().toString().endsWith(SCRIPT_EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+            return this.loadAll(scriptPaths);
+        }
+    }
+
+    /**
+     * A manifest lists one script path per line, relative to the manifest itself. Blank lines and '//' comments are skipped.
+     */
+    public ScriptBundle loadManifest(Path manifest) throws IOException {
+        Path baseDirectory = manifest.toAbsolutePath().getParent();
+        List<Path> scriptPaths = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest)) {
+            int commentIndex = line.indexOf("//");
+            if (commentIndex != -1) {
+                line = line.substring(0, commentIndex);
+            }
+            line = line.trim();
+            if (!line.isEmpty()) {
+                scriptPaths.add(baseDirectory.resolve(line));
+            }
+        }
+        return this.loadAll(scriptPaths);
+    }
+
+    /**
+     * @throws ScriptLoadException if two scripts declare the same function
+     */
+    public ScriptBundle loadAll(List<Path> scriptPaths) throws IOException {
+        long start = System.nanoTime();
+        LoadedScript[] results = new LoadedScript[scriptPaths.size()];
+        try {
+            pool.invoke(new LoadTask(scriptPaths, results, 0, results.length));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return new ScriptBundle(Arrays.asList(results), System.nanoTime() - start);
+    }
+
+    /**
+     * Splits the range of scripts in two until there is one script left, so idle workers can steal the other half.
+     */
+    private class LoadTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> scriptPaths;
+        private final LoadedScript[] results;
+        private final int from;
+        private final int to;
+
+        LoadTask(List<Path> scriptPaths, LoadedScript[] results, int from, int to) {
+            this.scriptPaths = scriptPaths;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LoadTask(scriptPaths, results, from, middle), new LoadTask(scriptPaths, results, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                try {
+                    results[i] = scriptLoader.load(scriptPaths.get(i));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.titanicscriptinterpreter.project.engine.loader;
+
+/**
+ * Thrown when a set of scripts cannot be loaded together, for instance two of them declare the same function.
+ */
+public class ScriptLoadException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public ScriptLoadException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,131 @@
+package com.titanicscriptinterpreter.project.engine.loader;
+
+import com.titanicscriptinterpreter.project.engine.lexer.Parser;
+import com.titanicscriptinterpreter.project.engine.lexer.ScriptLexer;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Lex and parse a script file, or get its statements from the binary cache written next to it.
+ *
+ * The cache file is keyed by the SHA-256 of the script source and by the AstFormat version,
+ * so editing the script or upgrading the interpreter makes it ignored and rewritten.
+ */
+public class ScriptLoader {
+
+    public static final String CACHE_EXTENSION = ".tsc";
+
+    private final boolean useCache;
+
+    public ScriptLoader() {
+        this(true);
+    }
+
+    public ScriptLoader(boolean useCache) {
+        this.useCache = useCache;
+    }
+
+    public static Path cachePathOf(Path scriptPath) {
+        return scriptPath.resolveSibling(scriptPath.getFileName() + CACHE_EXTENSION);
+    }
+
+    public LoadedScript load(Path scriptPath) throws IOException {
+        long start = System.nanoTime();
+        if (!useCache) {
+            // Nothing to hash, the parser can pull the tokens while the file is being read
+            try (ScriptLexer lexer = new ScriptLexer(Files.newBufferedReader(scriptPath))) {
+                List<Statement> statements = new Parser(lexer).parse();
+                return new LoadedScript(scriptPath, statements, false, System.nanoTime() - start);
+            }
+        }
+
+        byte[] source = Files.readAllBytes(scriptPath);
+        byte[] sourceHash = sha256(source);
+        Path cachePath = cachePathOf(scriptPath);
+
+        List<Statement> cached = this.readCache(cachePath, sourceHash);
+        if (cached != null) {
+            return new LoadedScript(scriptPath, cached, true, System.nanoTime() - start);
+        }
+
+        // Lex the bytes we hashed, not the file again: it may have changed in between
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(source), StandardCharsets.UTF_8));
+        Parser parser = new Parser(new ScriptLexer(reader));
+        List<Statement> statements = parser.parse();
+
+        // A script with errors is parsed again next time, so that the errors are reported again
+        if (!parser.hasErrors()) {
+            this.writeCache(cachePath, sourceHash, statements);
+        }
+
+        return new LoadedScript(scriptPath, statements, false, System.nanoTime() - start);
+    }
+
+    /**
+     * @return null if there is no usable cache file
+     */
+    private List<Statement> readCache(Path cachePath, byte[] sourceHash) {
+        if (!Files.isRegularFile(cachePath)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cachePath)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            AstReader reader = new AstReader(buffer);
+            if (!reader.checkHeader(sourceHash)) {
+                return null;
+            }
+            return reader.readStatements();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable script cache " + cachePath + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Written in a temporary file then moved, so that a concurrent loader never maps a half written cache.
+     */
+    private void writeCache(Path cachePath, byte[] sourceHash, List<Statement> statements) {
+        Path tmpPath = null;
+        try {
+            Path directory = cachePath.toAbsolutePath().getParent();
+            tmpPath = Files.createTempFile(directory, cachePath.getFileName().toString(), ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmpPath))) {
+                new AstWriter(out).write(sourceHash, statements);
+            }
+            Files.move(tmpPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Not fatal, the script will be parsed again next time
+            System.err.println("Could not write script cache " + cachePath + ": " + e);
+            if (tmpPath != null) {
+                try {
+                    Files.deleteIfExists(tmpPath);
+                } catch (IOException ignored) {
+                    // Nothing more we can do
+                }
+            }
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by the Java platform", e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.titanicscriptinterpreter.project.engine.metrics;
+
+/**
+ * The values of a LatencyHistogram at one point in time, in nanoseconds.
+ */
+public final class HistogramSnapshot {
+
+    private final long[] buckets;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    HistogramSnapshot(long[] buckets, long sum, long max) {
+        this.buckets = buckets;
+        long count = 0;
+        for (long bucket : buckets) {
+            count += bucket;
+        }
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return (count == 0) ? 0 : sum / (double) count;
+    }
+
+    /**
+     * @param percentile 50 for the median, 99.9...
+     * @return the upper bound of the bucket holding the value, so at most 25% above it, and never above the maximum
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(LatencyHistogram.upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * For the exporters that want the whole distribution: the number of values between the bounds of each bucket.
+     */
+    public int getBucketCount() {
+        return buckets.length;
+    }
+
+    public long getBucketValue(int bucket) {
+        return buckets[bucket];
+    }
+
+    public long getBucketLowerBound(int bucket) {
+        return LatencyHistogram.lowerBoundOf(bucket);
+    }
+
+    public long getBucketUpperBound(int bucket) {
+        return LatencyHistogram.upperBoundOf(bucket);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.0fns p50=%dns p99=%dns p999=%dns max=%dns",
+                count, this.getMean(), this.getPercentile(50), this.getPercentile(99), this.getPercentile(99.9), max);
+    }
+}
@@ -0,0 +1,89 @@
+package com.titanicscriptinterpreter.project.engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latencies in nanoseconds, counted in log buckets: 4 buckets per power of 2, so a bucket is at most 25% wide.
+ * The memory is fixed, whatever the number of values. Recording is lock-free and allocation-free,
+ * each thread recording in its stripe like a StripedCounter.
+ *
+ * The values above 2^40 ns (18 minutes) are counted in the last bucket.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    // Per stripe: the sum of the values, the maximum, then the buckets, padded to the next cache line
+    private static final int SUM = 0;
+    private static final int MAX = 1;
+    private static final int FIRST_BUCKET = 2;
+    private static final int STRIDE = (FIRST_BUCKET + BUCKETS + StripedCounter.PADDING - 1)
+            / StripedCounter.PADDING * StripedCounter.PADDING + StripedCounter.PADDING;
+
+    private final AtomicLongArray cells = new AtomicLongArray(StripedCounter.STRIPES * STRIDE);
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int base = StripedCounter.stripe() * STRIDE;
+        cells.getAndIncrement(base + FIRST_BUCKET + bucketOf(nanos));
+        cells.getAndAdd(base + SUM, nanos);
+        long max = cells.get(base + MAX);
+        while (nanos > max && !cells.compareAndSet(base + MAX, max, nanos)) {
+            max = cells.get(base + MAX);
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the smallest value counted in the bucket
+     */
+    static long lowerBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+
+    /**
+     * @return the largest value counted in the bucket
+     */
+    static long upperBoundOf(int bucket) {
+        return (bucket == BUCKETS - 1) ? Long.MAX_VALUE : lowerBoundOf(bucket + 1) - 1;
+    }
+
+    /**
+     * The stripes added together. The values recorded meanwhile may be in it or not, or only in some of its fields.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] buckets = new long[BUCKETS];
+        long sum = 0;
+        long max = 0;
+        for (int stripe = 0; stripe < StripedCounter.STRIPES; stripe++) {
+            int base = stripe * STRIDE;
+            sum += cells.get(base + SUM);
+            max = Math.max(max, cells.get(base + MAX));
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] += cells.get(base + FIRST_BUCKET + i);
+            }
+        }
+        return new HistogramSnapshot(buckets, sum, max);
+    }
+}
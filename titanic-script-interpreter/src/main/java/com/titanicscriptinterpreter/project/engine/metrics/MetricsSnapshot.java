@@ -0,0 +1,71 @@
+package com.titanicscriptinterpreter.project.engine.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The values of a ScriptMetrics at one point in time, for the game engine to export them where it wants.
+ * The latencies are in nanoseconds.
+ */
+public final class MetricsSnapshot {
+
+    private final Map<String, HistogramSnapshot> natives;
+    private final Map<String, HistogramSnapshot> functions;
+    private final HistogramSnapshot answerWaits;
+    private final Map<String, Long> counters;
+
+    MetricsSnapshot(Map<String, HistogramSnapshot> natives, Map<String, HistogramSnapshot> functions,
+            HistogramSnapshot answerWaits, Map<String, Long> counters) {
+        this.natives = Collections.unmodifiableMap(natives);
+        this.functions = Collections.unmodifiableMap(functions);
+        this.answerWaits = answerWaits;
+        this.counters = Collections.unmodifiableMap(counters);
+    }
+
+    /**
+     * @return the latency of each native called, by name
+     */
+    public Map<String, HistogramSnapshot> getNatives() {
+        return natives;
+    }
+
+    /**
+     * @return the latency of the calls of the game to each script function, by name
+     */
+    public Map<String, HistogramSnapshot> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * @return how long the sessions waited for the answers of the players
+     */
+    public HistogramSnapshot getAnswerWaits() {
+        return answerWaits;
+    }
+
+    /**
+     * @return "exits", "failures" and "suspensions"
+     */
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    /**
+     * Help to debug: one line per histogram and counter.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, HistogramSnapshot> entry : natives.entrySet()) {
+            sb.append("native ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, HistogramSnapshot> entry : functions.entrySet()) {
+            sb.append("function ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        sb.append("answer waits: ").append(answerWaits).append('\n');
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package com.titanicscriptinterpreter.project.engine.metrics;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.NativeRegistry;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What the engines measure while they run, cheap enough to stay on in production:
+ * - the latency of each native, by handle, so the number of calls too ("how often advancephase fires"),
+ * - the latency of each call of the game to a script function (callFunction()), by function,
+ * - how long the sessions wait for the answers of the players (see Session),
+ * - a few counters.
+ *
+ * Give it to an engine with setMetrics(), several engines and sessions can share it. Recording is lock-free and,
+ * once each native and function was called once, allocation-free. Export the values with snapshot().
+ */
+public final class ScriptMetrics {
+
+    private final NativeRegistry natives;
+    // Indexed by handle, grown when a native registered after this was created is called
+    private volatile LatencyHistogram[] nativeLatencies;
+    private final Map<String, LatencyHistogram> functionLatencies = new ConcurrentHashMap<>();
+    private final LatencyHistogram answerWaits = new LatencyHistogram();
+
+    private final StripedCounter exits = new StripedCounter();
+    private final StripedCounter failures = new StripedCounter();
+    private final StripedCounter suspensions = new StripedCounter();
+
+    public ScriptMetrics(NativeRegistry natives) {
+        this.natives = natives;
+        this.nativeLatencies = newHistograms(new LatencyHistogram[0], natives.size());
+    }
+
+    private static LatencyHistogram[] newHistograms(LatencyHistogram[] existing, int size) {
+        LatencyHistogram[] histograms = Arrays.copyOf(existing, size);
+        for (int i = existing.length; i < size; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    public void recordNative(int handle, long nanos) {
+        LatencyHistogram[] histograms = nativeLatencies;
+        if (handle >= histograms.length) {
+            histograms = this.growNatives(handle);
+        }
+        histograms[handle].record(nanos);
+    }
+
+    private synchronized LatencyHistogram[] growNatives(int handle) {
+        if (handle >= nativeLatencies.length) {
+            nativeLatencies = newHistograms(nativeLatencies, Math.max(handle + 1, natives.size()));
+        }
+        return nativeLatencies;
+    }
+
+    public void recordFunction(String funcName, long nanos) {
+        LatencyHistogram histogram = functionLatencies.get(funcName);
+        if (histogram == null) {
+            histogram = functionLatencies.computeIfAbsent(funcName, name -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    public void recordAnswerWait(long nanos) {
+        answerWaits.record(nanos);
+    }
+
+    /**
+     * A call of the game ended by 'exitcode'.
+     */
+    public void countExit() {
+        exits.increment();
+    }
+
+    /**
+     * A call of the game ended by an exception other than 'exitcode'.
+     */
+    public void countFailure() {
+        failures.increment();
+    }
+
+    /**
+     * A script suspended by a native, waiting for an answer or a delay.
+     */
+    public void countSuspension() {
+        suspensions.increment();
+    }
+
+    /**
+     * The values now, the natives and functions never called left out.
+     */
+    public MetricsSnapshot snapshot() {
+        Map<String, HistogramSnapshot> nativeSnapshots = new TreeMap<>();
+        LatencyHistogram[] histograms = nativeLatencies;
+        for (int handle = 0; handle < histograms.length; handle++) {
+            HistogramSnapshot snapshot = histograms[handle].snapshot();
+            if (snapshot.getCount() > 0) {
+                nativeSnapshots.put(natives.nameOf(handle), snapshot);
+            }
+        }
+
+        Map<String, HistogramSnapshot> functionSnapshots = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : functionLatencies.entrySet()) {
+            functionSnapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+
+        Map<String, Long> counters = new TreeMap<>();
+        counters.put("exits", exits.get());
+        counters.put("failures", failures.get());
+        counters.put("suspensions", suspensions.get());
+
+        return new MetricsSnapshot(nativeSnapshots, functionSnapshots, answerWaits.snapshot(), counters);
+    }
+}
@@ -0,0 +1,48 @@
+package com.titanicscriptinterpreter.project.engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter the sessions running on different threads can increment at once without fighting over one cache line:
+ * each thread adds to its stripe, the value is the sum of the stripes. Lock-free and allocation-free.
+ */
+public final class StripedCounter {
+
+    // A stripe every 8 longs, so that two stripes are never in the same cache line
+    static final int PADDING = 8;
+    static final int STRIPES = stripeCount();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    public void increment() {
+        cells.getAndIncrement(stripe() * PADDING);
+    }
+
+    public void add(long delta) {
+        cells.getAndAdd(stripe() * PADDING, delta);
+    }
+
+    /**
+     * The sum of the stripes: the increments made meanwhile may be counted or not.
+     */
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * The stripe of the current thread. The thread ids are sequential, so the threads of a pool land on different stripes.
+     */
+    static int stripe() {
+        return (int) Thread.currentThread().getId() & (STRIPES - 1);
+    }
+
+    private static int stripeCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        // A power of 2 up to 8, more would only cost memory
+        return Math.min(8, Integer.highestOneBit(processors * 2 - 1));
+    }
+}
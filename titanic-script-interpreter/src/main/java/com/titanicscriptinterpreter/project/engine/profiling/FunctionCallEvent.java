@@ -0,0 +1,51 @@
+package com.titanicscriptinterpreter.project.engine.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event of one call of a script function or of a native, committed when the call returns.
+ * Off by default, a recording has to enable it (see Profiling).
+ */
+@Name(FunctionCallEvent.NAME)
+@Label("Script Function Call")
+@Category({"Titanic Script", "Functions"})
+@Description("A call of a script function or of a native, with its self time")
+@Enabled(false)
+@StackTrace(false)
+public class FunctionCallEvent extends jdk.jfr.Event {
+
+    public static final String NAME = "titanic.FunctionCall";
+
+    @Label("Function")
+    String function;
+
+    @Label("Native")
+    @Description("Provided by the game engine instead of declared in a script")
+    boolean nativeFunction;
+
+    @Label("Total Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long totalTime;
+
+    @Label("Self Time")
+    @Description("The total time minus the time of the calls it made")
+    @Timespan(Timespan.NANOSECONDS)
+    long selfTime;
+
+    @Label("Call Depth")
+    @Description("0 for the function called by the game")
+    int depth;
+
+    @Label("Argument Count")
+    int argumentCount;
+
+    // Not recorded
+    transient long startNanos;
+    transient long childNanos;
+}
@@ -0,0 +1,111 @@
+package com.titanicscriptinterpreter.project.engine.profiling;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Reads the FunctionCallEvents of a .jfr recording and prints the functions by self time, the hottest first:
+ *
+ * java -cp titanic-script-interpreter-1.0-SNAPSHOT.jar com.titanicscriptinterpreter.project.engine.profiling.ProfileSummary game.jfr [--top 20]
+ *
+ * The total time of a recursive function counts its nested calls again, compare the self times.
+ */
+public class ProfileSummary {
+
+    private static final class FunctionStats {
+        final String name;
+        final boolean nativeFunction;
+        long calls;
+        long selfTime;
+        long totalTime;
+        long maxTime;
+        int maxDepth;
+        long argumentCount;
+
+        FunctionStats(String name, boolean nativeFunction) {
+            this.name = name;
+            this.nativeFunction = nativeFunction;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path recording = null;
+        int top = Integer.MAX_VALUE;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--top") && i + 1 < args.length) {
+                top = Integer.parseInt(args[++i]);
+            } else {
+                recording = Path.of(args[i]);
+            }
+        }
+        if (recording == null) {
+            System.err.println("Usage: ProfileSummary <recording.jfr> [--top n]");
+            System.exit(1);
+        }
+
+        List<FunctionStats> functions = ProfileSummary.read(recording);
+        if (functions.isEmpty()) {
+            System.err.println("No " + FunctionCallEvent.NAME + " event in " + recording + ", was it enabled in the recording?");
+            System.exit(1);
+        }
+        ProfileSummary.print(functions, top);
+    }
+
+    private static List<FunctionStats> read(Path recording) throws IOException {
+        Map<String, FunctionStats> byName = new HashMap<>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                if (!event.getEventType().getName().equals(FunctionCallEvent.NAME)) {
+                    continue;
+                }
+                boolean nativeFunction = event.getBoolean("nativeFunction");
+                String name = event.getString("function");
+                // A script function can have the name of a native
+                FunctionStats stats = byName.computeIfAbsent((nativeFunction ? "native " : "") + name,
+                        key -> new FunctionStats(name, nativeFunction));
+                long totalTime = event.getLong("totalTime");
+                stats.calls++;
+                stats.selfTime += event.getLong("selfTime");
+                stats.totalTime += totalTime;
+                stats.maxTime = Math.max(stats.maxTime, totalTime);
+                stats.maxDepth = Math.max(stats.maxDepth, event.getInt("depth"));
+                stats.argumentCount += event.getInt("argumentCount");
+            }
+        }
+
+        List<FunctionStats> functions = new ArrayList<>(byName.values());
+        functions.sort(Comparator.comparingLong((FunctionStats stats) -> stats.selfTime).reversed());
+        return functions;
+    }
+
+    private static void print(List<FunctionStats> functions, int top) {
+        long allSelfTime = 0;
+        long allCalls = 0;
+        for (FunctionStats stats : functions) {
+            allSelfTime += stats.selfTime;
+            allCalls += stats.calls;
+        }
+
+        System.out.printf("%-30s %7s %10s %12s %7s %12s %12s %9s %6s%n",
+                "function", "kind", "calls", "self (ms)", "self %", "total (ms)", "max (us)", "max depth", "args");
+        int count = 0;
+        for (FunctionStats stats : functions) {
+            if (count++ == top) {
+                break;
+            }
+            System.out.printf("%-30s %7s %10d %12.3f %6.1f%% %12.3f %12.1f %9d %6.1f%n",
+                    stats.name, stats.nativeFunction ? "native" : "script", stats.calls,
+                    stats.selfTime / 1e6, allSelfTime == 0 ? 0 : 100.0 * stats.selfTime / allSelfTime,
+                    stats.totalTime / 1e6, stats.maxTime / 1e3, stats.maxDepth, stats.argumentCount / (double) stats.calls);
+        }
+        System.out.printf("%d functions, %d calls, %.3f ms of self time%n", functions.size(), allCalls, allSelfTime / 1e6);
+    }
+}
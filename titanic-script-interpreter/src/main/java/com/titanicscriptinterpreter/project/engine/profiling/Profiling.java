@@ -0,0 +1,104 @@
+package com.titanicscriptinterpreter.project.engine.profiling;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.NativeRegistry;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+
+/**
+ * Where the engines emit their FunctionCallEvents. When no recording enables them, a call only costs the read of one flag.
+ *
+ * Enable them with a recording of the game, with --profile (see TitanicScriptInterpreter) or on the command line of java:
+ *
+ * -XX:StartFlightRecording:filename=game.jfr,+titanic.FunctionCall#enabled=true
+ *
+ * then summarize it with ProfileSummary. The suspended calls (see Suspension) are not recorded,
+ * nor in the VM the ones 'exitcode' ends.
+ */
+public final class Profiling {
+
+    // Refreshed each time a recording starts or stops
+    private static volatile boolean enabled;
+
+    static {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                Profiling.refresh();
+            }
+        });
+        if (FlightRecorder.isInitialized()) {
+            Profiling.refresh();
+        }
+    }
+
+    private Profiling() {
+    }
+
+    /**
+     * A recording of the events of this package only, the game can run with it for long.
+     */
+    public static Recording newRecording(Path destination) throws IOException {
+        Recording recording = new Recording();
+        recording.setName("Titanic Script Profiling");
+        recording.enable(FunctionCallEvent.class);
+        recording.setToDisk(true);
+        recording.setDestination(destination);
+        return recording;
+    }
+
+    private static void refresh() {
+        // Registers the event the first time, so that the settings of the running recordings apply to it
+        enabled = EventType.getEventType(FunctionCallEvent.class).isEnabled();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param depth 0 for the function called by the game
+     */
+    public static FunctionCallEvent begin(String function, boolean nativeFunction, int depth, int argumentCount) {
+        FunctionCallEvent event = new FunctionCallEvent();
+        event.function = function;
+        event.nativeFunction = nativeFunction;
+        event.depth = depth;
+        event.argumentCount = argumentCount;
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    /**
+     * @param caller the event of the calling function, null if the caller is the game or is not recorded
+     */
+    public static void end(FunctionCallEvent event, FunctionCallEvent caller) {
+        long totalTime = System.nanoTime() - event.startNanos;
+        event.end();
+        event.totalTime = totalTime;
+        event.selfTime = totalTime - event.childNanos;
+        if (caller != null) {
+            caller.childNanos += totalTime;
+        }
+        if (event.shouldCommit()) {
+            event.commit();
+        }
+    }
+
+    /**
+     * A native call recorded like a function, for the engines to use when isEnabled().
+     */
+    public static Object callNative(NativeRegistry natives, int handle, List<Object> argValues, ScriptContext ctx,
+            int depth, FunctionCallEvent caller) {
+        FunctionCallEvent event = Profiling.begin(natives.nameOf(handle), true, depth, argValues.size());
+        Object result = natives.call(handle, argValues, ctx);
+        Profiling.end(event, caller);
+        return result;
+    }
+}
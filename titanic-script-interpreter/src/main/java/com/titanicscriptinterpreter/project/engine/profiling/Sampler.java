@@ -0,0 +1,144 @@
+package com.titanicscriptinterpreter.project.engine.profiling;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Samples at a fixed rate the script functions and lines running on the contexts attached to it, see ShadowStack.
+ * The samples are written in the collapsed stack format the flame graph tools read (flamegraph.pl, speedscope...):
+ * one line per distinct stack, "runyoself:12;greet:3 42", 42 being the number of samples.
+ *
+ * Both engines keep the shadow stack of an attached context: a few stores per statement and per call, whatever the rate.
+ * The contexts not running a script function when sampled are not counted.
+ */
+public final class Sampler {
+
+    private final long periodNanos;
+    private final List<ShadowStack> stacks = new CopyOnWriteArrayList<>();
+    // Only touched by the sampling thread until stop()
+    private final Map<String, Long> samples = new HashMap<>();
+    private final StringBuilder key = new StringBuilder();
+    private long sampleCount;
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param hertz the samples per second, 1000 for instance
+     */
+    public Sampler(int hertz) {
+        if (hertz <= 0) {
+            throw new IllegalArgumentException("The sampling rate must be positive, got " + hertz);
+        }
+        this.periodNanos = TimeUnit.SECONDS.toNanos(1) / hertz;
+    }
+
+    /**
+     * Sample the scripts running on this root context from now on. Attach it before running it,
+     * the calls already in progress are only seen when they call another function.
+     */
+    public void attach(ScriptContext ctx) {
+        ShadowStack stack = new ShadowStack();
+        stacks.add(stack);
+        ctx.getRootContext().setShadowStack(stack);
+    }
+
+    public void detach(ScriptContext ctx) {
+        ScriptContext root = ctx.getRootContext();
+        ShadowStack stack = root.getShadowStack();
+        if (stack != null) {
+            root.setShadowStack(null);
+            stacks.remove(stack);
+        }
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("The sampler already started");
+        }
+        running = true;
+        thread = new Thread(this::sampleLoop, "script-sampler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Wait for the sampling thread to end, the samples can be written after.
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    private void sampleLoop() {
+        long next = System.nanoTime();
+        while (running) {
+            this.sample();
+            // On a schedule, so that a late sample does not shift the next ones
+            next += periodNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    private void sample() {
+        for (ShadowStack stack : stacks) {
+            key.setLength(0);
+            if (stack.appendTo(key)) {
+                samples.merge(key.toString(), 1L, Long::sum);
+                sampleCount++;
+            }
+        }
+    }
+
+    /**
+     * @return the samples taken of a running script function, once stopped
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * The collapsed stacks, the most sampled first. Call stop() before.
+     */
+    public void writeCollapsed(Writer out) throws IOException {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(samples.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        for (Map.Entry<String, Long> entry : entries) {
+            out.write(entry.getKey());
+            out.write(' ');
+            out.write(Long.toString(entry.getValue()));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    public void writeCollapsed(Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            this.writeCollapsed(out);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.titanicscriptinterpreter.project.engine.profiling;
+
+import java.util.Arrays;
+
+/**
+ * The script functions running on a context and the line each one is at, kept by the engines while a Sampler is attached.
+ *
+ * Only the thread running the script writes it, without any synchronization: the Sampler reads it from its own thread
+ * and may see it a few statements late, which is fine for sampling.
+ */
+public final class ShadowStack {
+
+    private String[] functions = new String[32];
+    private int[] lines = new int[32];
+    private int depth;
+
+    ShadowStack() {
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @param line where the function is, 0 until its first statement
+     */
+    public void push(String function, int line) {
+        if (depth == functions.length) {
+            functions = Arrays.copyOf(functions, depth * 2);
+            lines = Arrays.copyOf(lines, depth * 2);
+        }
+        functions[depth] = function;
+        lines[depth] = line;
+        depth++;
+    }
+
+    public void pop() {
+        if (depth > 0) {
+            depth--;
+        }
+    }
+
+    /**
+     * Drop the functions above the given depth, for the ones a call left without returning ('exitcode', a suspension...).
+     */
+    public void popTo(int depth) {
+        if (depth < this.depth) {
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * The statement the innermost function is at. Nothing when no function runs (top-level code).
+     */
+    public void setLine(int line) {
+        if (depth > 0) {
+            lines[depth - 1] = line;
+        }
+    }
+
+    /**
+     * Appends the stack, outermost function first, in the collapsed format of the flame graph tools: "runyoself:12;greet:3".
+     *
+     * @return false if no function runs
+     */
+    boolean appendTo(StringBuilder sb) {
+        // Read once: the running thread may grow the arrays in the meantime
+        int top = depth;
+        String[] functions = this.functions;
+        int[] lines = this.lines;
+        top = Math.min(top, Math.min(functions.length, lines.length));
+        boolean any = false;
+        for (int i = 0; i < top; i++) {
+            String function = functions[i];
+            if (function == null) {
+                continue;
+            }
+            if (any) {
+                sb.append(';');
+            }
+            sb.append(function).append(':').append(lines[i]);
+            any = true;
+        }
+        return any;
+    }
+}
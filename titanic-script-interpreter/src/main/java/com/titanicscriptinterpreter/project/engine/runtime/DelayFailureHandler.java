@@ -0,0 +1,13 @@
+package com.titanicscriptinterpreter.project.engine.runtime;
+
+/**
+ * Told of a script that failed after its delay, see Scheduler(int, DelayFailureHandler). Called on the thread of the
+ * game loop, in the middle of Scheduler.advance(): the other scripts of the tick resume after it, so it must not throw.
+ */
+public interface DelayFailureHandler {
+
+    /**
+     * @param session the session of the script, which is neither delayed nor waiting for an answer anymore
+     */
+    void delayedScriptFailed(Session session, RuntimeException e);
+}
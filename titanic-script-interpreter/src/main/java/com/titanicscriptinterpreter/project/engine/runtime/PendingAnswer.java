@@ -0,0 +1,37 @@
+package com.titanicscriptinterpreter.project.engine.runtime;
+
+import com.titanicscriptinterpreter.project.engine.bytecode.Continuation;
+
+/**
+ * Handed back by a Session when its script waits for the answer of the player (puppetevent).
+ * The script only costs its saved frames until Session.resume() is called with the answer.
+ */
+public final class PendingAnswer {
+
+    private final Continuation continuation;
+    private final long since = System.nanoTime(); // For ScriptMetrics
+
+    PendingAnswer(Continuation continuation) {
+        this.continuation = continuation;
+    }
+
+    long getSince() {
+        return since;
+    }
+
+    Continuation getContinuation() {
+        return continuation;
+    }
+
+    /**
+     * @return the function the script waits in
+     */
+    public String getFunctionName() {
+        return continuation.getFunctionName();
+    }
+
+    @Override
+    public String toString() {
+        return "PendingAnswer{" + continuation.getFunctionName() + "}";
+    }
+}
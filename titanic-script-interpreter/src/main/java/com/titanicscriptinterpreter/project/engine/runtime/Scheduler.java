@@ -0,0 +1,227 @@
+package com.titanicscriptinterpreter.project.engine.runtime;
+
+import com.titanicscriptinterpreter.project.engine.bytecode.Continuation;
+import com.titanicscriptinterpreter.project.engine.interpreter.ExitScriptException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Resumes the scripts suspended by delay(n) when their deadline passes, on a virtual clock.
+ *
+ * The clock only moves when advance() is called: by the game loop, or by a test to fast-forward
+ * without waiting. The delays ending within a turn of the wheel are kept in a hashed timer wheel: one bucket per tick
+ * modulo the wheel size, so scheduling them is O(1) and a bucket only holds the timers of one tick.
+ * The longer delays wait in an overflow heap ordered by deadline, and move to their bucket when the clock gets
+ * within a turn of it. The clock jumps from a deadline to the next, so an idle stretch costs at most a turn of the
+ * wheel, and tens of thousands of pending delays cost O(log n) each.
+ *
+ * The scripts whose delays end on the same tick are resumed in the order they were delayed, so a run is deterministic.
+ * A script failing after its delay does not stop the others: see DelayFailureHandler.
+ * Not thread-safe: advance() and the sessions it resumes run on the thread of the game loop.
+ */
+public class Scheduler {
+
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final Timer[] heads;
+    private final Timer[] tails;
+    private final int mask;
+    // The deadlines a turn of the wheel or more ahead, in the order they end then were delayed
+    private final PriorityQueue<Timer> overflow = new PriorityQueue<>(
+            Comparator.comparingLong((Timer timer) -> timer.deadline).thenComparingLong(timer -> timer.sequence));
+    private long now;
+    private long sequence;
+    private int pendingCount;
+    private int wheelCount; // The pending timers in the buckets, the others are in overflow
+    private final DelayFailureHandler failureHandler; // null: the failures are thrown by advance()
+    private final List<RuntimeException> failures = new ArrayList<>(); // Since advance() was called, without a handler
+
+    public Scheduler() {
+        this(DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * The scripts failing after their delay are thrown by advance() once every script due has resumed:
+     * the first failure, with the others suppressed.
+     *
+     * @param wheelSize number of buckets, a power of two. Larger than most delays is best.
+     */
+    public Scheduler(int wheelSize) {
+        this(wheelSize, null);
+    }
+
+    /**
+     * @param failureHandler told of each script failing after its delay, and of its session
+     */
+    public Scheduler(int wheelSize, DelayFailureHandler failureHandler) {
+        if (wheelSize <= 0 || (wheelSize & (wheelSize - 1)) != 0) {
+            throw new IllegalArgumentException("The wheel size must be a power of two: " + wheelSize);
+        }
+        this.heads = new Timer[wheelSize];
+        this.tails = new Timer[wheelSize];
+        this.mask = wheelSize - 1;
+        this.failureHandler = failureHandler;
+    }
+
+    public long now() {
+        return now;
+    }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * A delay of zero still waits for the next tick: the script never resumes while the clock is not moving.
+     *
+     * @return the tick the script resumes at
+     */
+    long schedule(Session session, Continuation continuation, long delay) {
+        Timer timer = new Timer(now + Math.max(delay, 1), sequence++, session, continuation);
+        this.add(timer);
+        pendingCount++;
+        return timer.deadline;
+    }
+
+    /**
+     * Move the clock forward by the given number of ticks, resuming the scripts whose delay ends on the way.
+     */
+    public void advance(long ticks) {
+        this.advanceTo(now + ticks);
+    }
+
+    /**
+     * Jumps from a deadline to the next up to the given time, the ticks without any are not looked at.
+     */
+    public void advanceTo(long time) {
+        this.moveTo(time);
+        this.throwFailures();
+    }
+
+    /**
+     * Fast-forward until no script is delayed anymore, from a deadline to the next.
+     */
+    public void runUntilIdle() {
+        while (pendingCount > 0) {
+            this.moveTo(this.nextDeadline());
+        }
+        this.throwFailures();
+    }
+
+    private void moveTo(long time) {
+        while (pendingCount > 0) {
+            long next = this.nextDeadline();
+            if (next > time) {
+                break;
+            }
+            now = next;
+            this.fillWheel();
+            this.fire((int) (now & mask));
+        }
+        if (time > now) {
+            now = time;
+            this.fillWheel();
+        }
+    }
+
+    /**
+     * The buckets are all within a turn of the wheel, and before the overflow: the first one not empty
+     * after now, else the head of the overflow.
+     */
+    private long nextDeadline() {
+        if (wheelCount > 0) {
+            for (long tick = now + 1; ; tick++) {
+                if (heads[(int) (tick & mask)] != null) {
+                    return tick;
+                }
+            }
+        }
+        return overflow.peek().deadline;
+    }
+
+    /**
+     * Move the timers of the overflow ending within a turn of the wheel to their bucket, before any timer delayed
+     * from now on: in the order they were delayed.
+     */
+    private void fillWheel() {
+        while (!overflow.isEmpty() && overflow.peek().deadline - now <= mask) {
+            Timer timer = overflow.poll();
+            this.append((int) (timer.deadline & mask), timer);
+            wheelCount++;
+        }
+    }
+
+    private void add(Timer timer) {
+        if (timer.deadline - now <= mask) {
+            this.append((int) (timer.deadline & mask), timer);
+            wheelCount++;
+        } else {
+            overflow.add(timer);
+        }
+    }
+
+    private void fire(int bucket) {
+        Timer timer = heads[bucket];
+        heads[bucket] = null;
+        tails[bucket] = null;
+
+        while (timer != null) {
+            // All of the bucket ends now
+            Timer next = timer.next;
+            timer.next = null;
+            pendingCount--;
+            wheelCount--;
+            try {
+                timer.session.resumeAfterDelay(timer.continuation);
+            } catch (ExitScriptException e) {
+                // The script ended with 'exitcode', nobody waits for its result
+            } catch (RuntimeException e) {
+                // Nobody waits for it either, and the other scripts of the bucket must still resume
+                if (failureHandler != null) {
+                    failureHandler.delayedScriptFailed(timer.session, e);
+                } else {
+                    failures.add(e);
+                }
+            }
+            timer = next;
+        }
+    }
+
+    private void throwFailures() {
+        if (failures.isEmpty()) {
+            return;
+        }
+        RuntimeException first = failures.get(0);
+        for (int i = 1; i < failures.size(); i++) {
+            first.addSuppressed(failures.get(i));
+        }
+        failures.clear();
+        throw first;
+    }
+
+    private void append(int bucket, Timer timer) {
+        if (tails[bucket] == null) {
+            heads[bucket] = timer;
+        } else {
+            tails[bucket].next = timer;
+        }
+        tails[bucket] = timer;
+    }
+
+    private static final class Timer {
+        final long deadline;
+        final long sequence; // The order of the delays ending on the same tick
+        final Session session;
+        final Continuation continuation;
+        Timer next;
+
+        Timer(long deadline, long sequence, Session session, Continuation continuation) {
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.session = session;
+            this.continuation = continuation;
+        }
+    }
+}
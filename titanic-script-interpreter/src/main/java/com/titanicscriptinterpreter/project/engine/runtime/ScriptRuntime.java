@@ -0,0 +1,117 @@
+package com.titanicscriptinterpreter.project.engine.runtime;
+
+import com.titanicscriptinterpreter.project.engine.bytecode.VirtualMachine;
+import com.titanicscriptinterpreter.project.engine.coverage.CoverageData;
+import com.titanicscriptinterpreter.project.engine.debug.ScriptHooks;
+import com.titanicscriptinterpreter.project.engine.interpreter.NativeRegistry;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptIO;
+import com.titanicscriptinterpreter.project.engine.interpreter.Suspension;
+import com.titanicscriptinterpreter.project.engine.metrics.ScriptMetrics;
+import com.titanicscriptinterpreter.project.engine.snapshot.SnapshotException;
+import com.titanicscriptinterpreter.project.engine.snapshot.SnapshotReader;
+import com.titanicscriptinterpreter.project.engine.statements.Statement;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The scripts compiled once and shared by many sessions, one per player or NPC conversation.
+ *
+ * The top-level code of the scripts runs once, on the initial globals. Each session then starts from a copy of them,
+ * with its own ScriptIO. The sessions share the frozen VM, its function table and the compiled code, which are only read:
+ * they can run on as many threads as there are sessions without any lock on the function lookup.
+ */
+public class ScriptRuntime {
+
+    private final VirtualMachine vm;
+    private final ScriptContext template; // A fork of the initial globals, never written: the sessions fork it
+
+    /**
+     * @param initialGlobals a root context with the globals the game engine sets before the scripts run,
+     *                       it belongs to the runtime afterwards
+     * @param natives every native must be registered already
+     */
+    public ScriptRuntime(List<Statement> statements, NativeRegistry natives, ScriptContext initialGlobals) {
+        this(statements, natives, initialGlobals, null);
+    }
+
+    /**
+     * @param coverage if not null, the lines and branches run by all the sessions are recorded in it
+     */
+    public ScriptRuntime(List<Statement> statements, NativeRegistry natives, ScriptContext initialGlobals, CoverageData coverage) {
+        ScriptContext root = initialGlobals.getRootContext();
+        this.vm = new VirtualMachine(root, natives);
+        vm.setCoverage(coverage);
+        vm.load(statements, root);
+        vm.freeze();
+        this.template = root.copyGlobals();
+    }
+
+    /**
+     * Measure the calls of every session from now on, null to stop. See ScriptMetrics.snapshot() to export them.
+     */
+    public void setMetrics(ScriptMetrics metrics) {
+        vm.setMetrics(metrics);
+    }
+
+    /**
+     * Trace the statements of every session and stop at the breakpoints of the hooks, from any thread,
+     * even while sessions run. See ScriptHooks.
+     */
+    public void attach(ScriptHooks hooks) {
+        vm.attach(hooks);
+    }
+
+    public void detach() {
+        vm.detach();
+    }
+
+    /**
+     * Can be called from any thread. The session itself must be used by one thread at a time.
+     */
+    public Session openSession(ScriptIO io) {
+        return this.openSession(io, null);
+    }
+
+    /**
+     * The delays of the session wait for the given Scheduler. Without one, delay(n) returns at once.
+     */
+    public Session openSession(ScriptIO io, Scheduler scheduler) {
+        // The template does not own its chunks, forking it only reads it: the sessions can fork it at the same time
+        ScriptContext globals = template.copyGlobals();
+        globals.setIO(io);
+        return new Session(vm, globals, scheduler);
+    }
+
+    /**
+     * A session back from a snapshot saved by Session.save(), made with the same scripts.
+     * Without a Scheduler, a script that was delayed resumes at once.
+     *
+     * @throws SnapshotException if the snapshot is corrupted or made with other scripts
+     */
+    public Session restoreSession(FileChannel channel, ScriptIO io, Scheduler scheduler) throws IOException {
+        Session session = this.openSession(io, scheduler);
+        SnapshotReader in = new SnapshotReader(channel);
+        in.readGlobals(session.getGlobals());
+        Suspension reason = in.readSuspension();
+        if (reason != null) {
+            session.restore(vm.restoreFrames(in, session.getGlobals(), reason));
+        }
+        return session;
+    }
+
+    /**
+     * One thread per task, virtual if the JVM has them (Java 21), so that thousands of sessions waiting for their player
+     * do not hold as many platform threads. Otherwise the platform threads are reused when their session ends.
+     */
+    public static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
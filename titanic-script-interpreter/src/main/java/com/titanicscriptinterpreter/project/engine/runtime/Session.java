@@ -0,0 +1,157 @@
+package com.titanicscriptinterpreter.project.engine.runtime;
+
+import com.titanicscriptinterpreter.project.engine.bytecode.Continuation;
+import com.titanicscriptinterpreter.project.engine.bytecode.VirtualMachine;
+import com.titanicscriptinterpreter.project.engine.interpreter.EmptyFunctionResult;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptIO;
+import com.titanicscriptinterpreter.project.engine.interpreter.Suspension;
+import com.titanicscriptinterpreter.project.engine.snapshot.SnapshotWriter;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * One player or NPC conversation: its own globals and ScriptIO, on the scripts shared by the ScriptRuntime.
+ * Not thread-safe: a session is used by one thread at a time, the sessions run in parallel.
+ */
+public class Session {
+
+    private final VirtualMachine vm;
+    private final ScriptContext globals;
+    private final Scheduler scheduler; // null: a delay ends at once
+    private PendingAnswer pending; // The script waiting for the answer of the player, if any
+    private Continuation delayed; // The script waiting for the Scheduler, if any
+    private long delayEnd; // The tick of the Scheduler it resumes at
+
+    Session(VirtualMachine vm, ScriptContext globals, Scheduler scheduler) {
+        this.vm = vm;
+        this.globals = globals;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Same contract as ScriptEngine.callFunction().
+     *
+     * @throws com.titanicscriptinterpreter.project.engine.interpreter.ExitScriptException if the script ran 'exitcode'
+     */
+    public Object callFunction(String funcName, List<Object> argValues) {
+        return vm.callFunction(funcName, argValues, globals);
+    }
+
+    /**
+     * Run a function without blocking on puppetevent: the script is suspended until resume().
+     * On delay(n) it is suspended until the Scheduler of the session resumes it.
+     *
+     * @return the answer the script waits for, or null if the function ended or is delayed
+     * @throws com.titanicscriptinterpreter.project.engine.interpreter.ExitScriptException if the script ran 'exitcode'
+     */
+    public PendingAnswer start(String funcName, List<Object> argValues) {
+        if (pending != null) {
+            throw new IllegalStateException("The session is waiting for an answer in " + pending.getFunctionName());
+        }
+        if (delayed != null) {
+            throw new IllegalStateException("The session is waiting for a delay to end");
+        }
+        return this.pendingOf(vm.start(funcName, argValues, globals));
+    }
+
+    /**
+     * Continue the script waiting for an answer, puppetevent returning the given answer id.
+     *
+     * @return the next answer the script waits for, or null if the function ended or is delayed
+     * @throws com.titanicscriptinterpreter.project.engine.interpreter.ExitScriptException if the script ran 'exitcode'
+     */
+    public PendingAnswer resume(int answerId) {
+        if (pending == null) {
+            throw new IllegalStateException("The session is not waiting for an answer");
+        }
+        Continuation continuation = pending.getContinuation();
+        if (vm.getMetrics() != null) {
+            vm.getMetrics().recordAnswerWait(System.nanoTime() - pending.getSince());
+        }
+        pending = null;
+        return this.pendingOf(vm.resume(continuation, answerId));
+    }
+
+    /**
+     * Called by the Scheduler when the delay is over, delay(n) returning as if it had waited.
+     */
+    void resumeAfterDelay(Continuation continuation) {
+        delayed = null;
+        this.pendingOf(vm.resume(continuation, EmptyFunctionResult.INSTANCE));
+    }
+
+    public PendingAnswer getPending() {
+        return pending;
+    }
+
+    public boolean isDelayed() {
+        return delayed != null;
+    }
+
+    /**
+     * Save the globals and the suspended script of the session, see SnapshotFormat.
+     * Not while the script runs. A delayed script is saved with the ticks it still has to wait.
+     *
+     * @throws com.titanicscriptinterpreter.project.engine.snapshot.SnapshotException if a value is not a script value
+     */
+    public void save(WritableByteChannel channel) throws IOException {
+        SnapshotWriter out = new SnapshotWriter(channel);
+        out.writeGlobals(globals);
+        if (pending != null) {
+            out.writeSuspension(Suspension.AWAITING_ANSWER);
+            vm.saveFrames(pending.getContinuation(), out);
+        } else if (delayed != null) {
+            out.writeSuspension(Suspension.delay(delayEnd - scheduler.now()));
+            vm.saveFrames(delayed, out);
+        } else {
+            out.writeSuspension(null);
+        }
+        out.flush();
+    }
+
+    /**
+     * A what-if branch of this session, to try an answer and throw it away: the same globals, shared until written
+     * (see ScriptContext.copyGlobals()), and a copy of the suspended script if any. A delayed one waits on the same Scheduler.
+     * The fork and this session can then run in parallel. Not while the script runs.
+     */
+    public Session fork(ScriptIO io) {
+        ScriptContext forkGlobals = globals.copyGlobals();
+        forkGlobals.setIO(io);
+        Session fork = new Session(vm, forkGlobals, scheduler);
+        if (pending != null) {
+            fork.restore(vm.copyContinuation(pending.getContinuation(), forkGlobals, Suspension.AWAITING_ANSWER));
+        } else if (delayed != null) {
+            fork.restore(vm.copyContinuation(delayed, forkGlobals, Suspension.delay(delayEnd - scheduler.now())));
+        }
+        return fork;
+    }
+
+    /**
+     * A script restored from a snapshot waits again for what it waited for.
+     */
+    void restore(Continuation continuation) {
+        this.pendingOf(continuation);
+    }
+
+    private PendingAnswer pendingOf(Object result) {
+        while (result instanceof Continuation continuation
+                && continuation.getReason() instanceof Suspension suspension && suspension.isDelay()) {
+            if (scheduler != null) {
+                delayed = continuation;
+                delayEnd = scheduler.schedule(this, continuation, suspension.getDelay());
+                return null;
+            }
+            result = vm.resume(continuation, EmptyFunctionResult.INSTANCE);
+        }
+        if (result instanceof Continuation continuation) {
+            pending = new PendingAnswer(continuation);
+        }
+        return pending;
+    }
+
+    public ScriptContext getGlobals() {
+        return globals;
+    }
+}
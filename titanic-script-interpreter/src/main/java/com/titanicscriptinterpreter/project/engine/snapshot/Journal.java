@@ -0,0 +1,346 @@
+package com.titanicscriptinterpreter.project.engine.snapshot;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.GlobalSymbols;
+import com.titanicscriptinterpreter.project.engine.interpreter.GlobalWriteListener;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.lexer.ValueType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of the global variables of a root context, so that a crash loses nothing since the last snapshot.
+ *
+ * Attach it with ScriptContext.setGlobalWriteListener(). A write of a global only keeps the value of its slot in memory,
+ * the values are written and forced to the disk in one batch per commit window (group commit), on a background thread.
+ * A batch is replayed whole or not at all, so it only holds the last value of each global written during the window:
+ * a script writing a global in a loop costs one record per window. With a window of zero, each write is forced to
+ * the disk before the script goes on.
+ *
+ * At startup: restore the last snapshot, replay() the journal on top of it, then open() the journal again.
+ * After each snapshot, call checkpoint(): the journal starts over.
+ */
+public class Journal implements GlobalWriteListener, Closeable {
+
+    private final FileChannel channel;
+    private final GlobalSymbols symbols;
+    private final ScheduledExecutorService committer; // null: every write commits at once
+    private final Object commitLock = new Object(); // One batch written at a time, in order
+    private final ByteBuffer[] batchBuffers = new ByteBuffer[2];
+    private final ByteBuffer batchHeader = ByteBuffer.allocate(JournalFormat.BATCH_HEADER_LENGTH);
+    private final CRC32 crc = new CRC32();
+
+    // Guarded by this
+    private byte[] tags = new byte[16]; // By slot, the last value written since the last commit
+    private long[] payloads = new long[16];
+    private Object[] refs = new Object[16];
+    private boolean[] dirty = new boolean[16]; // The slots written since the last commit
+    private int[] dirtySlots = new int[16]; // The same, in the order they were first written
+    private int dirtyCount;
+    private SnapshotWriter pending = new SnapshotWriter(); // The records of a batch that failed, to write again
+    private SnapshotWriter spare = new SnapshotWriter();
+    private boolean[] named = new boolean[16]; // The slots whose NAME record is already in the file
+    private final BitSet unsaved = new BitSet(); // The slots reported for holding a value that cannot be saved
+    private long writeCount;
+
+    // Guarded by commitLock
+    private long committedLength; // The end of the last batch forced to the disk, what follows is torn
+    private long commitCount;
+    private IOException failure; // Of a background commit, thrown by the next sync() or close()
+
+    private Journal(FileChannel channel, GlobalSymbols symbols, long commitWindowMillis) throws IOException {
+        this.channel = channel;
+        this.symbols = symbols;
+        this.committedLength = channel.size();
+        if (commitWindowMillis > 0) {
+            this.committer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "journal-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            committer.scheduleWithFixedDelay(this::commitInBackground, commitWindowMillis, commitWindowMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.committer = null;
+        }
+    }
+
+    /**
+     * Appends to the journal if it exists. A batch cut by a crash at its end is dropped first.
+     *
+     * @param symbols the symbols of the root context the journal will be attached to
+     * @param commitWindowMillis how long a write can wait for its batch to be forced to the disk
+     */
+    public static Journal open(Path path, GlobalSymbols symbols, long commitWindowMillis) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeHeader(channel);
+            } else {
+                ByteBuffer existing = ByteBuffer.allocate((int) channel.size());
+                while (existing.hasRemaining() && channel.read(existing, existing.position()) >= 0) {
+                    // Until the end of the file
+                }
+                existing.flip();
+                JournalReader reader = new JournalReader(existing);
+                if (!reader.checkHeader()) {
+                    throw new SnapshotException("Not a journal of format version " + JournalFormat.VERSION + ": " + path);
+                }
+                reader.replay(null);
+                channel.truncate(reader.getValidLength());
+            }
+            channel.position(channel.size());
+            return new Journal(channel, symbols, commitWindowMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Apply the writes of the journal to the globals of the context, usually just restored from a snapshot.
+     *
+     * @return the number of SET records replayed, one per global and batch, zero if there is no journal
+     */
+    public static int replay(Path path, ScriptContext ctx) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        JournalReader reader = new JournalReader(ByteBuffer.wrap(Files.readAllBytes(path)));
+        if (!reader.checkHeader()) {
+            throw new SnapshotException("Not a journal of format version " + JournalFormat.VERSION + ": " + path);
+        }
+        return reader.replay(ctx);
+    }
+
+    @Override
+    public void globalWritten(int slot, byte tag, long payload, Object ref) {
+        if (tag == ValueType.OBJECT) {
+            // Same as the snapshots, only the script values can be saved. Reported once, a script can write it in a loop
+            synchronized (this) {
+                if (!unsaved.get(slot)) {
+                    unsaved.set(slot);
+                    System.err.println("Journal: cannot save the value of " + symbols.nameOf(slot) + ": " + ref);
+                }
+            }
+            return;
+        }
+
+        synchronized (this) {
+            if (slot >= tags.length) {
+                this.growSlots(slot + 1);
+            }
+            tags[slot] = tag;
+            payloads[slot] = payload;
+            refs[slot] = ref;
+            if (!dirty[slot]) {
+                dirty[slot] = true;
+                if (dirtyCount == dirtySlots.length) {
+                    dirtySlots = Arrays.copyOf(dirtySlots, dirtyCount * 2);
+                }
+                dirtySlots[dirtyCount++] = slot;
+            }
+            writeCount++;
+        }
+
+        if (committer == null) {
+            try {
+                this.sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write the journal", e);
+            }
+        }
+    }
+
+    /**
+     * Write the records not committed yet and force them to the disk, without waiting for the commit window.
+     */
+    public void sync() throws IOException {
+        synchronized (commitLock) {
+            if (failure != null) {
+                IOException e = failure;
+                failure = null;
+                throw e;
+            }
+            this.commit();
+        }
+    }
+
+    /**
+     * Call it on the thread of the session, right after a snapshot of its globals: the journal starts over.
+     */
+    public void checkpoint() throws IOException {
+        synchronized (commitLock) {
+            synchronized (this) {
+                // The snapshot holds the values written so far
+                pending.buffer().clear();
+                Arrays.fill(named, false);
+                this.clearDirty();
+            }
+            channel.truncate(0);
+            writeHeader(channel);
+            channel.force(false);
+            committedLength = JournalFormat.HEADER_LENGTH;
+        }
+    }
+
+    /**
+     * How many writes of globals the journal was told of, the ones coalesced in a batch included.
+     */
+    public synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * How many batches were forced to the disk, the writes per commit tell how well they are grouped.
+     */
+    public long getCommitCount() {
+        synchronized (commitLock) {
+            return commitCount;
+        }
+    }
+
+    /**
+     * Commit what is left. Detach the journal from the context first.
+     */
+    @Override
+    public void close() throws IOException {
+        if (committer != null) {
+            committer.shutdown();
+        }
+        try {
+            this.sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void commitInBackground() {
+        synchronized (commitLock) {
+            try {
+                this.commit();
+            } catch (IOException e) {
+                System.err.println("Journal: cannot write the batch: " + e.getMessage());
+                failure = e;
+            }
+        }
+    }
+
+    // Holding commitLock
+    private void commit() throws IOException {
+        SnapshotWriter batch;
+        synchronized (this) {
+            if (dirtyCount == 0 && pending.buffer().position() == 0) {
+                return;
+            }
+            // After the records of a batch that failed, if any
+            for (int i = 0; i < dirtyCount; i++) {
+                int slot = dirtySlots[i];
+                if (!named[slot]) {
+                    pending.writeByte(JournalFormat.NAME);
+                    pending.writeVarInt(slot);
+                    pending.writeString(symbols.nameOf(slot));
+                    named[slot] = true;
+                }
+                pending.writeByte(JournalFormat.SET);
+                pending.writeVarInt(slot);
+                pending.writeValue(tags[slot], payloads[slot], refs[slot]);
+            }
+            this.clearDirty();
+            // The scripts go on writing in the other buffer meanwhile
+            batch = pending;
+            pending = spare;
+            spare = batch;
+        }
+
+        ByteBuffer records = batch.buffer();
+        records.flip();
+        records.mark();
+        crc.reset();
+        crc.update(records);
+        records.reset();
+
+        batchHeader.clear();
+        batchHeader.putInt(records.remaining());
+        batchHeader.putInt((int) crc.getValue());
+        batchHeader.flip();
+        batchBuffers[0] = batchHeader;
+        batchBuffers[1] = records;
+        try {
+            if (channel.size() != committedLength) {
+                // A batch that failed before: the replay would stop at it, and lose every batch after it
+                channel.truncate(committedLength);
+            }
+            channel.position(committedLength);
+            while (records.hasRemaining()) {
+                channel.write(batchBuffers);
+            }
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            this.requeue(batch);
+            throw e;
+        }
+        records.clear();
+        committedLength = channel.position();
+        commitCount++;
+    }
+
+    /**
+     * Put the records of a batch that failed back in front of the ones written meanwhile, so the next commit writes
+     * them again, in order: the NAME records of the batch are still needed before the SET records of the slots.
+     */
+    private void requeue(SnapshotWriter batch) throws IOException {
+        ByteBuffer records = batch.buffer();
+        synchronized (this) {
+            // Back to appending after the records of the batch
+            records.position(records.limit());
+            records.limit(records.capacity());
+            ByteBuffer newer = pending.buffer();
+            newer.flip();
+            batch.writeBytes(newer);
+            newer.clear();
+            spare = pending;
+            pending = batch;
+        }
+    }
+
+    // Holding this
+    private void growSlots(int count) {
+        int length = Math.max(count, tags.length * 2);
+        tags = Arrays.copyOf(tags, length);
+        payloads = Arrays.copyOf(payloads, length);
+        refs = Arrays.copyOf(refs, length);
+        dirty = Arrays.copyOf(dirty, length);
+        named = Arrays.copyOf(named, length);
+    }
+
+    // Holding this
+    private void clearDirty() {
+        for (int i = 0; i < dirtyCount; i++) {
+            dirty[dirtySlots[i]] = false;
+            refs[dirtySlots[i]] = null; // The strings are not kept until the slot is written again
+        }
+        dirtyCount = 0;
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(JournalFormat.HEADER_LENGTH);
+        header.putInt(JournalFormat.MAGIC);
+        header.putInt(JournalFormat.VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.position(JournalFormat.HEADER_LENGTH);
+    }
+}
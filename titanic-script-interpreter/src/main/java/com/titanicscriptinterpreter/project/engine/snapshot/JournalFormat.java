@@ -0,0 +1,27 @@
+package com.titanicscriptinterpreter.project.engine.snapshot;
+
+/**
+ * Layout of the journal files, where the writes of the globals go between two snapshots:
+ *
+ * magic, format version, then the batches written by each group commit: the byte length of the records,
+ * their CRC32, then the records. A record is a kind byte:
+ * NAME then the slot and the name of a global, before its first SET in the file,
+ * SET then the slot and the value, encoded like in the snapshots (see SnapshotFormat).
+ *
+ * The slots are the ones of the process that wrote the records, the NAME records map them to the current ones.
+ * The fixed size numbers are big-endian, the others varints.
+ * A batch cut by a crash or failing its CRC ends the journal: it and anything after is dropped.
+ */
+final class JournalFormat {
+
+    static final int MAGIC = 0x54534A4C; // "TSJL"
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 8;
+    static final int BATCH_HEADER_LENGTH = 8;
+
+    static final byte NAME = 1;
+    static final byte SET = 2;
+
+    private JournalFormat() {
+    }
+}
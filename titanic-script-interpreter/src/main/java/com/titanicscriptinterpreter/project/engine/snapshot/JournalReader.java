@@ -0,0 +1,111 @@
+package com.titanicscriptinterpreter.project.engine.snapshot;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.GlobalSymbols;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Goes through the batches of a journal, see JournalFormat, until the end or the first damaged batch.
+ */
+class JournalReader {
+
+    private final ByteBuffer in;
+    private int validLength;
+
+    JournalReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    /**
+     * @return false if the bytes are not a journal of the current format
+     */
+    boolean checkHeader() {
+        if (in.remaining() < JournalFormat.HEADER_LENGTH) {
+            return false;
+        }
+        if (in.getInt() != JournalFormat.MAGIC || in.getInt() != JournalFormat.VERSION) {
+            return false;
+        }
+        validLength = in.position();
+        return true;
+    }
+
+    /**
+     * Apply the SET records to the globals of the context, or only check the batches if it is null.
+     *
+     * @return the number of SET records
+     */
+    int replay(ScriptContext ctx) {
+        ScriptContext root = (ctx == null) ? null : ctx.getRootContext();
+        int[] slots = new int[0]; // From the slots of the journal to the ones of the context, -1 if unknown
+        byte[] tag = new byte[1];
+        long[] payload = new long[1];
+        Object[] ref = new Object[1];
+        CRC32 crc = new CRC32();
+        int count = 0;
+
+        while (in.remaining() >= JournalFormat.BATCH_HEADER_LENGTH) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                break;
+            }
+            ByteBuffer batch = in.slice();
+            batch.limit(length);
+            crc.reset();
+            crc.update(batch.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            in.position(in.position() + length);
+            validLength = in.position();
+
+            SnapshotReader records = new SnapshotReader(batch);
+            try {
+                while (records.hasRemaining()) {
+                    byte kind = records.readByte();
+                    int slot = records.readVarInt();
+                    if (slot >= slots.length) {
+                        int oldLength = slots.length;
+                        slots = Arrays.copyOf(slots, Math.max(slot + 1, oldLength * 2));
+                        Arrays.fill(slots, oldLength, slots.length, -1);
+                    }
+
+                    if (kind == JournalFormat.NAME) {
+                        String name = records.readString();
+                        if (root != null) {
+                            GlobalSymbols symbols = root.getGlobalSymbols();
+                            slots[slot] = symbols.slotOf(name);
+                            root.ensureGlobalCapacity(symbols.size());
+                        }
+                    } else if (kind == JournalFormat.SET) {
+                        records.readValues(tag, payload, ref, 1);
+                        if (root != null) {
+                            if (slots[slot] == -1) {
+                                throw new SnapshotException("Corrupted journal, a write to a global without a name");
+                            }
+                            root.setGlobal(slots[slot], tag[0], payload[0], ref[0]);
+                        }
+                        count++;
+                    } else {
+                        throw new SnapshotException("Corrupted journal, unknown record " + kind);
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                // The CRC matched, so it was written like that
+                throw new SnapshotException("Corrupted journal, a record is cut");
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The length of the header and of the batches that are complete, after replay().
+     */
+    int getValidLength() {
+        return validLength;
+    }
+}
@@ -0,0 +1,13 @@
+package com.titanicscriptinterpreter.project.engine.snapshot;
+
+/**
+ * Thrown when a state cannot be saved (a native left an object that is not a script value)
+ * or a snapshot cannot be restored (corrupted, of another format version, or made with other scripts).
+ */
+public class SnapshotException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public SnapshotException(String message) {
+        super(message);
+    }
+}
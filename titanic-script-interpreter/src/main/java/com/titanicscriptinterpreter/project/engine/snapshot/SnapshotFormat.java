@@ -0,0 +1,32 @@
+package com.titanicscriptinterpreter.project.engine.snapshot;
+
+/**
+ * Layout of the snapshot files (save-games):
+ *
+ * magic, format version, then the globals:
+ * the slot count, the names in slot order (length + UTF-8 bytes each), then for each slot its value: a ValueType tag, or UNDEFINED for a slot never set, followed by
+ * 4 bytes for an INT, 8 for a DOUBLE (Double.doubleToLongBits), 1 for a BOOLEAN, length + UTF-8 bytes for a STRING.
+ *
+ * A session snapshot goes on with what the script waits for (IDLE, ANSWER, or DELAY then the ticks left),
+ * and unless IDLE the count of suspended frames, from the outermost: the function name, its code length and
+ * pc in the code without LINE instructions (see CompiledFunction), sp, and the values of the slots below sp
+ * (locals then operand stack), encoded like the globals.
+ *
+ * Counts, lengths and indexes are varints, the fixed size numbers are big-endian.
+ * Bump VERSION for any change of this layout, old snapshots are then refused.
+ */
+final class SnapshotFormat {
+
+    static final int MAGIC = 0x5453534E; // "TSSN"
+    static final int VERSION = 2;
+
+    static final byte UNDEFINED = -1;
+
+    // What the script of a session waits for
+    static final byte IDLE = 0;
+    static final byte ANSWER = 1;
+    static final byte DELAY = 2;
+
+    private SnapshotFormat() {
+    }
+}
@@ -0,0 +1,199 @@
+package com.titanicscriptinterpreter.project.engine.snapshot;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.GlobalSymbols;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.interpreter.Suspension;
+import com.titanicscriptinterpreter.project.engine.lexer.ValueType;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a snapshot back, see SnapshotFormat. The file is read at once, then the values go straight
+ * to the unboxed storage of the globals and frames: only the strings are allocated.
+ */
+public class SnapshotReader {
+
+    private final ByteBuffer in;
+
+    /**
+     * Over some bytes without the header, the batches of the Journal.
+     */
+    SnapshotReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the channel from its position to its end.
+     */
+    public SnapshotReader(FileChannel channel) throws IOException {
+        long size = channel.size() - channel.position();
+        if (size < 8 || size > Integer.MAX_VALUE) {
+            throw new SnapshotException("Not a snapshot, its size is " + size);
+        }
+        in = ByteBuffer.allocate((int) size);
+        while (in.hasRemaining() && channel.read(in) >= 0) {
+            // Until the end of the file
+        }
+        in.flip();
+
+        if (in.getInt() != SnapshotFormat.MAGIC) {
+            throw new SnapshotException("Not a snapshot");
+        }
+        int version = in.getInt();
+        if (version != SnapshotFormat.VERSION) {
+            throw new SnapshotException("Snapshot of format version " + version + ", expected " + SnapshotFormat.VERSION);
+        }
+    }
+
+    /**
+     * The saved names are mapped to the slots of the context, new ones are created.
+     * The globals not in the snapshot keep their value.
+     */
+    public void readGlobals(ScriptContext ctx) {
+        ScriptContext root = ctx.getRootContext();
+        GlobalSymbols symbols = root.getGlobalSymbols();
+
+        try {
+            int count = this.readVarInt();
+            int[] slots = new int[count];
+            for (int i = 0; i < count; i++) {
+                int length = this.readVarInt();
+                if (i < symbols.size() && this.isAt(symbols.nameOf(i), length)) {
+                    // Usually saved with the same scripts: the name is at the same slot, no need to decode it
+                    slots[i] = i;
+                    in.position(in.position() + length);
+                } else {
+                    slots[i] = symbols.slotOf(this.decode(length));
+                }
+            }
+
+            root.ensureGlobalCapacity(symbols.size());
+            for (int i = 0; i < count; i++) {
+                byte tag = in.get();
+                if (tag != SnapshotFormat.UNDEFINED) {
+                    long payload = this.readPayload(tag);
+                    root.setGlobal(slots[i], tag, payload, (tag == ValueType.STRING) ? this.readString() : null);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new SnapshotException("The snapshot is truncated");
+        }
+    }
+
+    /**
+     * @return what the script of the session waited for, null if it was not suspended
+     */
+    public Suspension readSuspension() {
+        try {
+            switch (in.get()) {
+                case SnapshotFormat.IDLE:
+                    return null;
+                case SnapshotFormat.ANSWER:
+                    return Suspension.AWAITING_ANSWER;
+                case SnapshotFormat.DELAY:
+                    return Suspension.delay(this.readVarLong());
+                default:
+                    throw new SnapshotException("Corrupted snapshot, unknown suspension at " + (in.position() - 1));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new SnapshotException("The snapshot is truncated");
+        }
+    }
+
+    public void readValues(byte[] tags, long[] payloads, Object[] refs, int count) {
+        try {
+            for (int i = 0; i < count; i++) {
+                byte tag = in.get();
+                tags[i] = tag;
+                payloads[i] = this.readPayload(tag);
+                refs[i] = (tag == ValueType.STRING) ? this.readString() : null;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new SnapshotException("The snapshot is truncated");
+        }
+    }
+
+    byte readByte() {
+        return in.get();
+    }
+
+    boolean hasRemaining() {
+        return in.hasRemaining();
+    }
+
+    public String readString() {
+        return this.decode(this.readVarInt());
+    }
+
+    public int readVarInt() {
+        long value = this.readVarLong();
+        if (value > Integer.MAX_VALUE) {
+            throw new SnapshotException("Corrupted snapshot, number too large at " + in.position());
+        }
+        return (int) value;
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) {
+                throw new SnapshotException("Corrupted snapshot, number too large at " + in.position());
+            }
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * The strings are read after their payload, by the caller.
+     */
+    private long readPayload(byte tag) {
+        switch (tag) {
+            case ValueType.NULL:
+            case ValueType.EMPTY:
+            case ValueType.STRING:
+                return 0;
+            case ValueType.INT:
+                return in.getInt();
+            case ValueType.DOUBLE:
+                return in.getLong();
+            case ValueType.BOOLEAN:
+                return in.get();
+            default:
+                throw new SnapshotException("Corrupted snapshot, unknown value type " + tag + " at " + (in.position() - 1));
+        }
+    }
+
+    private String decode(int length) {
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Whether the next bytes are the given name, for the names that are ASCII. The others are decoded.
+     */
+    private boolean isAt(String name, int length) {
+        if (name.length() != length || in.remaining() < length) {
+            return false;
+        }
+        int position = in.position();
+        for (int i = 0; i < length; i++) {
+            byte b = in.get(position + i);
+            if (b < 0 || b != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package com.titanicscriptinterpreter.project.engine.snapshot;
+
+import com.titanicscriptinterpreter.project.engine.interpreter.GlobalSymbols;
+import com.titanicscriptinterpreter.project.engine.interpreter.ScriptContext;
+import com.titanicscriptinterpreter.project.engine.interpreter.Suspension;
+import com.titanicscriptinterpreter.project.engine.lexer.ValueType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a snapshot in the format described in SnapshotFormat, through a small buffer straight to the channel.
+ * Call flush() at the end.
+ *
+ * The Journal uses it in memory, without a channel nor the header, to gather its records.
+ */
+public class SnapshotWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    public SnapshotWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        buffer.putInt(SnapshotFormat.MAGIC);
+        buffer.putInt(SnapshotFormat.VERSION);
+    }
+
+    /**
+     * In memory: the buffer grows instead of being flushed.
+     */
+    SnapshotWriter() {
+        this.channel = null;
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public void writeGlobals(ScriptContext ctx) throws IOException {
+        ScriptContext root = ctx.getRootContext();
+        GlobalSymbols symbols = root.getGlobalSymbols();
+        int count = symbols.size();
+
+        this.writeVarInt(count);
+        for (int slot = 0; slot < count; slot++) {
+            this.writeString(symbols.nameOf(slot));
+        }
+        for (int slot = 0; slot < count; slot++) {
+            if (root.isGlobalDefined(slot)) {
+                this.writeValue(root.getGlobalTag(slot), root.getGlobalPayload(slot), root.getGlobalRef(slot));
+            } else {
+                this.ensure(1);
+                buffer.put(SnapshotFormat.UNDEFINED);
+            }
+        }
+    }
+
+    /**
+     * What the script of a session waits for, null if it is not suspended.
+     */
+    public void writeSuspension(Suspension reason) throws IOException {
+        this.ensure(1);
+        if (reason == null) {
+            buffer.put(SnapshotFormat.IDLE);
+        } else if (reason.isDelay()) {
+            buffer.put(SnapshotFormat.DELAY);
+            this.writeVarLong(reason.getDelay());
+        } else {
+            buffer.put(SnapshotFormat.ANSWER);
+        }
+    }
+
+    /**
+     * The values of the slots below count, in the unboxed form of the VM (see Value).
+     */
+    public void writeValues(byte[] tags, long[] payloads, Object[] refs, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            this.writeValue(tags[i], payloads[i], refs[i]);
+        }
+    }
+
+    public void writeValue(byte tag, long payload, Object ref) throws IOException {
+        this.ensure(9);
+        switch (tag) {
+            case ValueType.NULL:
+            case ValueType.EMPTY:
+                buffer.put(tag);
+                break;
+            case ValueType.INT:
+                buffer.put(tag);
+                buffer.putInt((int) payload);
+                break;
+            case ValueType.DOUBLE:
+                buffer.put(tag);
+                buffer.putLong(payload);
+                break;
+            case ValueType.BOOLEAN:
+                buffer.put(tag);
+                buffer.put((byte) payload);
+                break;
+            case ValueType.STRING:
+                buffer.put(tag);
+                this.writeString((String) ref);
+                break;
+            default:
+                throw new SnapshotException("Only script values can be saved, not: " + ref);
+        }
+    }
+
+    /**
+     * The bytes left in the given buffer.
+     */
+    void writeBytes(ByteBuffer bytes) throws IOException {
+        this.ensure(bytes.remaining());
+        buffer.put(bytes);
+    }
+
+    void writeByte(byte value) throws IOException {
+        this.ensure(1);
+        buffer.put(value);
+    }
+
+    public void writeString(String value) throws IOException {
+        int charCount = value.length();
+        if (charCount < BUFFER_SIZE / 2 && isAscii(value)) {
+            // One byte per char, no need to encode it first
+            this.writeVarInt(charCount);
+            this.ensure(charCount);
+            for (int i = 0; i < charCount; i++) {
+                buffer.put((byte) value.charAt(i));
+            }
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.writeVarInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            // Longer strings than the buffer go in several times
+            this.ensure(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    public void writeVarInt(int value) throws IOException {
+        this.writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    public void writeVarLong(long value) throws IOException {
+        this.ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensure(int size) throws IOException {
+        if (buffer.remaining() >= size) {
+            return;
+        }
+        if (channel != null) {
+            this.flush();
+        } else {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+}
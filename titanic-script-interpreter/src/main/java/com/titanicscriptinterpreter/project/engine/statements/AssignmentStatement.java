@@ -5,6 +5,7 @@ import com.titanicscriptinterpreter.project.engine.lexer.Expression;
 public class AssignmentStatement implements Statement {
     private final String variableName;
     private final Expression rightHandSide;
+    private int line;
 
     public AssignmentStatement(String variableName, Expression rightHandSide) {
         this.variableName = variableName;
@@ -14,6 +15,16 @@ public class AssignmentStatement implements Statement {
     public String getVariableName() { return variableName; }
     public Expression getRightHandSide() { return rightHandSide; }
 
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void setLine(int line) {
+        this.line = line;
+    }
+
     @Override
     public String toString() {
         return variableName + " = " + rightHandSide;
@@ -2,6 +2,18 @@ package com.titanicscriptinterpreter.project.engine.statements;
 
 public class ExitCodeStatement implements Statement {
 
+    private int line;
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void setLine(int line) {
+        this.line = line;
+    }
+
     @Override
     public String toString() {
         return "ExitCodeStatement";
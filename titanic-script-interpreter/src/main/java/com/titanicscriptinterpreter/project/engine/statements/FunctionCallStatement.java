@@ -1,5 +1,6 @@
 package com.titanicscriptinterpreter.project.engine.statements;
 
+import com.titanicscriptinterpreter.project.engine.interpreter.CallTarget;
 import java.util.List;
 import com.titanicscriptinterpreter.project.engine.lexer.Expression;
 
@@ -7,6 +8,8 @@ public class FunctionCallStatement implements Statement {
 
     private final String functionName;
     private final List<Expression> arguments;
+    private CallTarget target; // Set by the link phase of the Interpreter
+    private int line;
 
     public FunctionCallStatement(String functionName, List<Expression> arguments) {
         this.functionName = functionName;
@@ -24,6 +27,27 @@ public class FunctionCallStatement implements Statement {
         return arguments;
     }
 
+    /**
+     * @return null if the statement was not linked
+     */
+    public CallTarget getTarget() {
+        return target;
+    }
+
+    public void setTarget(CallTarget target) {
+        this.target = target;
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void setLine(int line) {
+        this.line = line;
+    }
+
     @Override
     public String toString() {
         return "FunctionCallStatement{" +
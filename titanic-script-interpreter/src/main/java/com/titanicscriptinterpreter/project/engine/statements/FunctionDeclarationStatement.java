@@ -14,6 +14,7 @@ public class FunctionDeclarationStatement implements Statement {
 
     // Store the context under which this function was declared.
     private final ScriptContext creationContext;
+    private int line;
 
     public FunctionDeclarationStatement(String functionName,
             List<String> parameters,
@@ -47,6 +48,16 @@ public class FunctionDeclarationStatement implements Statement {
         return creationContext;
     }
 
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void setLine(int line) {
+        this.line = line;
+    }
+
     @Override
     public String toString() {
         return "FunctionDeclarationStatement{"
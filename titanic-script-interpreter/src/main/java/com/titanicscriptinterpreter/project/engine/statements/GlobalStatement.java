@@ -4,6 +4,7 @@ import java.util.List;
 
 public class GlobalStatement implements Statement {
     private final List<String> variableNames;
+    private int line;
 
     public GlobalStatement(List<String> variableNames) {
         this.variableNames = variableNames;
@@ -13,6 +14,16 @@ public class GlobalStatement implements Statement {
         return variableNames;
     }
 
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void setLine(int line) {
+        this.line = line;
+    }
+
     @Override
     public String toString() {
         return "GlobalStatement{variableNames=" + variableNames + "}";
@@ -8,6 +8,7 @@ public class IfStatement implements Statement {
     private final Condition condition;
     private final List<Statement> thenStatements;
     private final List<Statement> elseStatements;  // Can be empty if no else
+    private int line;
 
     public IfStatement(Condition condition,
             List<Statement> thenStatements,
@@ -29,6 +30,16 @@ public class IfStatement implements Statement {
         return elseStatements;
     }
 
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void setLine(int line) {
+        this.line = line;
+    }
+
     @Override
     public String toString() {
         return "IfStatement{"
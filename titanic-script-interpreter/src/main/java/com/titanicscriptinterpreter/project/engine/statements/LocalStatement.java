@@ -5,6 +5,7 @@ import java.util.List;
 public class LocalStatement implements Statement {
 
     private final List<String> variableNames;
+    private int line;
 
     public LocalStatement(List<String> variableNames) {
         this.variableNames = variableNames;
@@ -14,6 +15,16 @@ public class LocalStatement implements Statement {
         return variableNames;
     }
 
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void setLine(int line) {
+        this.line = line;
+    }
+
     @Override
     public String toString() {
         return "LocalStatement{vars=" + variableNames + "}";
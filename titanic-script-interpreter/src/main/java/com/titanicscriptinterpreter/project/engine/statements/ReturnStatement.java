@@ -4,6 +4,7 @@ import com.titanicscriptinterpreter.project.engine.lexer.Expression;
 
 public class ReturnStatement implements Statement {
     private final Expression returnValue;
+    private int line;
 
     public ReturnStatement(Expression returnValue) {
         this.returnValue = returnValue;
@@ -13,6 +14,16 @@ public class ReturnStatement implements Statement {
         return returnValue;
     }
 
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void setLine(int line) {
+        this.line = line;
+    }
+
     @Override
     public String toString() {
         return "ReturnStatement{" + returnValue + "}";
@@ -1,4 +1,11 @@
 package com.titanicscriptinterpreter.project.engine.statements;
 
 public interface Statement {
+
+    /**
+     * @return the line of the script the statement starts on, 0 if it is not known
+     */
+    int getLine();
+
+    void setLine(int line);
 }
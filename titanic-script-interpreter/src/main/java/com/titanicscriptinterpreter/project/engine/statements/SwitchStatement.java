@@ -8,6 +8,7 @@ public class SwitchStatement implements Statement {
 
     private final Expression switchExpression;
     private final List<CaseBlock> cases;
+    private int line;
 
     public SwitchStatement(Expression switchExpression, List<CaseBlock> cases) {
         this.switchExpression = switchExpression;
@@ -22,6 +23,16 @@ public class SwitchStatement implements Statement {
         return cases;
     }
 
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void setLine(int line) {
+        this.line = line;
+    }
+
     @Override
     public String toString() {
         return "SwitchStatement{ expression=" + switchExpression + ", cases=" + cases + "}";
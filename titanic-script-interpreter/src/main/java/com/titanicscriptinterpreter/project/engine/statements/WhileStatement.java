@@ -6,6 +6,7 @@ import java.util.List;
 public class WhileStatement implements Statement {
     private final Condition condition;
     private final List<Statement> body;
+    private int line;
 
     public WhileStatement(Condition condition, List<Statement> body) {
         this.condition = condition;
@@ -15,6 +16,16 @@ public class WhileStatement implements Statement {
     public Condition getCondition() { return condition; }
     public List<Statement> getBody() { return body; }
 
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void setLine(int line) {
+        this.line = line;
+    }
+
     @Override
     public String toString() {
         return "WhileStatement{ condition=" + condition + ", body=" + body + "}";